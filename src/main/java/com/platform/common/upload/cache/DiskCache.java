@@ -0,0 +1,339 @@
+package com.platform.common.upload.cache;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.platform.common.upload.utils.ContentLengthInputStream;
+import com.platform.common.upload.utils.SingleFlight;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 本地磁盘读缓存
+ * 未命中时完整下载到缓存目录后再读取，同一个key的并发未命中只下载一次；按总大小LRU淘汰
+ * 超过缓存上限的文件（Content-Length或写入时判断）直接读取，不缓存
+ */
+@Slf4j
+public class DiskCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * 缓存文件索引（访问顺序），value为文件大小
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final SingleFlight<Path> loading = new SingleFlight<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder hitBytes = new LongAdder();
+
+    private final LongAdder loadBytes = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private final LongAdder bypassCount = new LongAdder();
+
+    private final String name;
+
+    private final Path dir;
+
+    private final long maxSize;
+
+    private long size;
+
+    /**
+     * @param name    缓存名称（日志用）
+     * @param dir     缓存目录，已有的缓存文件会被重新加载
+     * @param maxSize 缓存总大小上限，字节
+     */
+    public DiskCache(String name, Path dir, long maxSize) {
+        this.name = name;
+        this.dir = dir;
+        this.maxSize = maxSize;
+        try {
+            Files.createDirectories(dir);
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 读取缓存，未命中时通过 loader 获取并写入缓存
+     * 缓存读写异常时直接返回 loader 的结果
+     *
+     * @param key    缓存键（如文件访问地址）
+     * @param loader 获取原始文件流
+     */
+    public InputStream get(String key, Supplier<InputStream> loader) {
+        String fileName = DigestUtil.sha256Hex(key);
+        InputStream inputStream = open(fileName);
+        if (inputStream != null) {
+            return inputStream;
+        }
+        missCount.increment();
+        // 超过缓存上限的文件不缓存，由本次调用直接返回
+        AtomicReference<InputStream> direct = new AtomicReference<>();
+        Path path;
+        try {
+            path = loading.execute(fileName, () -> fetch(fileName, loader, direct));
+        } catch (UncheckedIOException e) {
+            log.warn("{}磁盘缓存写入失败：{}", name, key, e);
+            return loader.get();
+        }
+        if (path == null) {
+            bypassCount.increment();
+            // 合并等待的调用各自直接读取
+            return direct.get() != null ? direct.get() : loader.get();
+        }
+        try {
+            return Files.newInputStream(path);
+        } catch (IOException e) {
+            log.warn("{}磁盘缓存读取失败：{}", name, key, e);
+            return loader.get();
+        }
+    }
+
+    /**
+     * 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 从缓存读取的字节数
+     */
+    public long getHitBytes() {
+        return hitBytes.sum();
+    }
+
+    /**
+     * 下载写入缓存的字节数
+     */
+    public long getLoadBytes() {
+        return loadBytes.sum();
+    }
+
+    /**
+     * 淘汰次数
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * 超过缓存上限、直接读取不缓存的次数
+     */
+    public long getBypassCount() {
+        return bypassCount.sum();
+    }
+
+    /**
+     * 缓存文件数量
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * 缓存总大小，字节
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * 命中时打开缓存文件，文件已被淘汰时视为未命中
+     */
+    private InputStream open(String fileName) {
+        Long length;
+        synchronized (this) {
+            length = entries.get(fileName);
+        }
+        if (length == null) {
+            return null;
+        }
+        try {
+            InputStream inputStream = Files.newInputStream(resolve(fileName));
+            hitCount.increment();
+            hitBytes.add(length);
+            return inputStream;
+        } catch (NoSuchFileException e) {
+            remove(fileName, length);
+            return null;
+        } catch (IOException e) {
+            log.warn("{}磁盘缓存读取失败：{}", name, fileName, e);
+            return null;
+        }
+    }
+
+    /**
+     * 下载到临时文件后移动到缓存目录
+     * 超过缓存上限时返回null，文件流放入 direct：已知长度的直接返回，未知长度的写满上限后与剩余部分拼接返回
+     */
+    private Path fetch(String fileName, Supplier<InputStream> loader, AtomicReference<InputStream> direct) {
+        Path path = resolve(fileName);
+        synchronized (this) {
+            // 等待合并期间已由其他调用写入
+            if (entries.containsKey(fileName) && Files.exists(path)) {
+                return path;
+            }
+        }
+        InputStream inputStream = loader.get();
+        if (inputStream instanceof ContentLengthInputStream
+                && ((ContentLengthInputStream) inputStream).getContentLength() > maxSize) {
+            direct.set(inputStream);
+            return null;
+        }
+        Path temp = path.resolveSibling(fileName + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        long length;
+        try {
+            Files.createDirectories(path.getParent());
+            // 最多写入上限+1字节，用于判断是否超过上限
+            BoundedInputStream bounded = new BoundedInputStream(inputStream, maxSize + 1);
+            bounded.setPropagateClose(false);
+            length = Files.copy(bounded, temp, StandardCopyOption.REPLACE_EXISTING);
+            if (length > maxSize) {
+                direct.set(new SequenceInputStream(new DeleteOnCloseInputStream(temp), inputStream));
+                return null;
+            }
+        } catch (IOException e) {
+            IOUtils.closeQuietly(inputStream);
+            deleteQuietly(temp);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            IOUtils.closeQuietly(inputStream);
+            deleteQuietly(temp);
+            throw e;
+        }
+        IOUtils.closeQuietly(inputStream);
+        loadBytes.add(length);
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException(e);
+        }
+        put(fileName, length);
+        return path;
+    }
+
+    private void put(String fileName, long length) {
+        Map<String, Long> evicted = new LinkedHashMap<>();
+        synchronized (this) {
+            Long old = entries.put(fileName, length);
+            size += length - (old == null ? 0 : old);
+            Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                if (eldest.getKey().equals(fileName)) {
+                    continue;
+                }
+                iterator.remove();
+                size -= eldest.getValue();
+                evicted.put(eldest.getKey(), eldest.getValue());
+            }
+        }
+        // 已打开的读取流不受删除影响（类Unix系统）
+        evicted.keySet().forEach(key -> deleteQuietly(resolve(key)));
+        if (!evicted.isEmpty()) {
+            evictionCount.add(evicted.size());
+            log.info("{}磁盘缓存淘汰{}个文件，命中{}次，未命中{}次", name, evicted.size(), getHitCount(), getMissCount());
+        }
+    }
+
+    /**
+     * 移除已失效的条目，期间已被其他调用重新写入的不移除
+     */
+    private synchronized void remove(String fileName, Long length) {
+        if (length.equals(entries.get(fileName)) && !Files.exists(resolve(fileName))) {
+            entries.remove(fileName);
+            size -= length;
+        }
+    }
+
+    /**
+     * 加载已有缓存文件（按修改时间作为访问顺序），清理残留的临时文件
+     */
+    private void load() throws IOException {
+        try (Stream<Path> stream = Files.walk(dir, 2)) {
+            stream.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        if (path.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                            deleteQuietly(path);
+                            return false;
+                        }
+                        return true;
+                    })
+                    .sorted((a, b) -> Long.compare(a.toFile().lastModified(), b.toFile().lastModified()))
+                    .forEach(path -> put(path.getFileName().toString(), path.toFile().length()));
+        }
+        log.info("{}磁盘缓存已加载：{}，{}个文件，{}字节", name, dir, getCount(), getSize());
+    }
+
+    /**
+     * 缓存文件路径：dir/sha256前2位/sha256
+     */
+    private Path resolve(String fileName) {
+        return dir.resolve(fileName.substring(0, 2)).resolve(fileName);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("缓存文件删除失败：{}", path, e);
+        }
+    }
+
+    /**
+     * 关闭时删除文件的输入流
+     */
+    private static class DeleteOnCloseInputStream extends FilterInputStream {
+
+        private final Path path;
+
+        private DeleteOnCloseInputStream(Path path) throws IOException {
+            super(Files.newInputStream(path));
+            this.path = path;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                deleteQuietly(path);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,312 @@
+package com.platform.common.upload.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 小文件内存缓存
+ * 新对象先进入窗口区（LRU），窗口溢出时与主区最久未访问的对象比较访问频率（Count-Min Sketch估算），频率更高者保留
+ * 超过单个对象大小上限的文件不缓存，对象过期后重新加载
+ */
+@Slf4j
+public class MemoryCache {
+
+    /**
+     * 窗口区占总容量的比例
+     */
+    private static final int WINDOW_PERCENT = 1;
+
+    private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final FrequencySketch sketch;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder hitBytes = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private final LongAdder rejectCount = new LongAdder();
+
+    private final String name;
+
+    private final long windowMaxSize;
+
+    private final long mainMaxSize;
+
+    private final int maxObjectSize;
+
+    private final long ttl;
+
+    private long windowSize;
+
+    private long mainSize;
+
+    /**
+     * @param name          缓存名称（日志用）
+     * @param maxSize       缓存总大小上限，字节
+     * @param maxObjectSize 单个对象大小上限，字节
+     * @param ttl           对象有效期，毫秒
+     */
+    public MemoryCache(String name, long maxSize, int maxObjectSize, long ttl) {
+        this.name = name;
+        this.maxObjectSize = maxObjectSize;
+        this.ttl = ttl;
+        this.windowMaxSize = Math.min(maxSize, Math.max(maxSize * WINDOW_PERCENT / 100, maxObjectSize));
+        this.mainMaxSize = maxSize - windowMaxSize;
+        // 按平均对象大小为上限的1/4估算可容纳的对象数
+        long capacity = maxSize / Math.max(1, maxObjectSize / 4);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, Math.max(capacity, 1024)));
+    }
+
+    /**
+     * 读取缓存，未命中时通过 loader 获取，不超过单个对象上限的文件写入缓存
+     *
+     * @param key    缓存键（如文件访问地址）
+     * @param loader 获取原始文件流
+     */
+    public InputStream get(String key, Supplier<InputStream> loader) {
+        byte[] value = getIfPresent(key);
+        if (value != null) {
+            hitCount.increment();
+            hitBytes.add(value.length);
+            return new ByteArrayInputStream(value);
+        }
+        missCount.increment();
+        InputStream inputStream = loader.get();
+        byte[] buffer = new byte[maxObjectSize + 1];
+        int length;
+        try {
+            length = IOUtils.read(inputStream, buffer);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(inputStream);
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败");
+        }
+        if (length > maxObjectSize) {
+            // 超过上限，已读部分与剩余部分拼接返回
+            return new SequenceInputStream(new ByteArrayInputStream(buffer, 0, length), inputStream);
+        }
+        IOUtils.closeQuietly(inputStream);
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, 0, bytes, 0, length);
+        put(key, bytes);
+        return new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 从缓存读取的字节数
+     */
+    public long getHitBytes() {
+        return hitBytes.sum();
+    }
+
+    /**
+     * 淘汰次数（主区被替换的对象）
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * 未被准入次数（访问频率低于主区淘汰候选）
+     */
+    public long getRejectCount() {
+        return rejectCount.sum();
+    }
+
+    /**
+     * 缓存对象数量
+     */
+    public synchronized int getCount() {
+        return window.size() + main.size();
+    }
+
+    /**
+     * 缓存总大小，字节
+     */
+    public synchronized long getSize() {
+        return windowSize + mainSize;
+    }
+
+    private synchronized byte[] getIfPresent(String key) {
+        sketch.increment(key);
+        long now = System.currentTimeMillis();
+        Entry entry = window.get(key);
+        if (entry != null) {
+            if (entry.expireAt > now) {
+                return entry.value;
+            }
+            window.remove(key);
+            windowSize -= entry.value.length;
+            return null;
+        }
+        entry = main.get(key);
+        if (entry != null) {
+            if (entry.expireAt > now) {
+                return entry.value;
+            }
+            main.remove(key);
+            mainSize -= entry.value.length;
+        }
+        return null;
+    }
+
+    private synchronized void put(String key, byte[] value) {
+        Entry old = window.remove(key);
+        if (old != null) {
+            windowSize -= old.value.length;
+        }
+        old = main.remove(key);
+        if (old != null) {
+            mainSize -= old.value.length;
+        }
+        window.put(key, new Entry(value, System.currentTimeMillis() + ttl));
+        windowSize += value.length;
+        Iterator<Map.Entry<String, Entry>> iterator = window.entrySet().iterator();
+        while (windowSize > windowMaxSize && iterator.hasNext()) {
+            Map.Entry<String, Entry> candidate = iterator.next();
+            iterator.remove();
+            windowSize -= candidate.getValue().value.length;
+            admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /**
+     * 窗口区淘汰的对象尝试进入主区
+     */
+    private void admit(String key, Entry candidate) {
+        int length = candidate.value.length;
+        if (length > mainMaxSize) {
+            rejectCount.increment();
+            return;
+        }
+        int frequency = sketch.frequency(key);
+        long now = System.currentTimeMillis();
+        // 先确认有足够的淘汰对象（已过期或访问频率更低），再统一淘汰，被拒绝时主区不变
+        List<String> victims = new ArrayList<>();
+        long freed = 0;
+        Iterator<Map.Entry<String, Entry>> iterator = main.entrySet().iterator();
+        while (mainSize - freed + length > mainMaxSize && iterator.hasNext()) {
+            Map.Entry<String, Entry> victim = iterator.next();
+            if (victim.getValue().expireAt > now && sketch.frequency(victim.getKey()) >= frequency) {
+                rejectCount.increment();
+                return;
+            }
+            victims.add(victim.getKey());
+            freed += victim.getValue().value.length;
+        }
+        for (String victim : victims) {
+            main.remove(victim);
+        }
+        mainSize -= freed;
+        evictionCount.add(victims.size());
+        main.put(key, candidate);
+        mainSize += length;
+    }
+
+    private static class Entry {
+
+        private final byte[] value;
+
+        private final long expireAt;
+
+        private Entry(byte[] value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 访问频率估算（4行Count-Min Sketch，计数上限15）
+     * 累计次数达到样本数后所有计数减半，使频率随时间衰减
+     */
+    private static class FrequencySketch {
+
+        private static final int[] SEEDS = {0x97cb3127, 0xb1ca5a6b, 0x9e3779b9, 0x85ebca6b};
+
+        private final byte[][] table;
+
+        private final int mask;
+
+        private final int sampleSize;
+
+        private int additions;
+
+        private FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(capacity - 1) << 1;
+            table = new byte[SEEDS.length][width];
+            mask = width - 1;
+            sampleSize = width * 10;
+        }
+
+        private void increment(String key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = index(hash, i);
+                if (table[i][index] < 15) {
+                    table[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private int frequency(String key) {
+            int hash = key.hashCode();
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, table[i][index(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.platform.common.upload.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * 上传凭证缓存
+ * 按作用域（如目录前缀）缓存凭证，到期前 refreshAhead 毫秒内重新生成
+ */
+@Slf4j
+public class TokenCache<T> {
+
+    private final ConcurrentMap<String, Token<T>> tokens = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final String name;
+
+    private final long refreshAhead;
+
+    public TokenCache(String name, long refreshAhead) {
+        this.name = name;
+        this.refreshAhead = refreshAhead;
+    }
+
+    /**
+     * 获取凭证
+     *
+     * @param scope   作用域
+     * @param expire  凭证有效期，毫秒
+     * @param creator 生成凭证，参数为过期时间戳
+     */
+    public T get(String scope, long expire, LongFunction<T> creator) {
+        long now = System.currentTimeMillis();
+        Token<T> token = tokens.get(scope);
+        if (token != null && token.isValid(now, refreshAhead)) {
+            hitCount.increment();
+            return token.value;
+        }
+        boolean[] created = new boolean[1];
+        token = tokens.compute(scope, (key, old) -> {
+            if (old != null && old.isValid(now, refreshAhead)) {
+                return old;
+            }
+            created[0] = true;
+            long expireAt = now + expire;
+            return new Token<>(creator.apply(expireAt), expireAt);
+        });
+        if (!created[0]) {
+            hitCount.increment();
+            return token.value;
+        }
+        missCount.increment();
+        // 清理过期的作用域
+        tokens.values().removeIf(item -> item.expireAt <= now);
+        log.info("{}凭证已生成：{}，命中{}次，未命中{}次", name, scope, getHitCount(), getMissCount());
+        return token.value;
+    }
+
+    /**
+     * 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    private static class Token<V> {
+
+        private final V value;
+
+        private final long expireAt;
+
+        private Token(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isValid(long now, long refreshAhead) {
+            return expireAt - refreshAhead > now;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.platform.common.upload.enums;
+
+import lombok.Getter;
+
+/**
+ * 存储路径布局枚举
+ */
+@Getter
+public enum KeyLayoutEnum {
+
+    /**
+     * prefix/yyyyMM/dd/HH/fileName
+     */
+    DATE("date", "日期目录"),
+
+    /**
+     * prefix/shard/yyyyMM/dd/HH/fileName
+     */
+    SHARD_DATE("shard_date", "分片在日期前"),
+
+    /**
+     * prefix/yyyyMM/dd/HH/shard/fileName
+     */
+    DATE_SHARD("date_shard", "分片在日期后"),
+
+    ;
+
+    private final String code;
+    private final String info;
+
+    KeyLayoutEnum(String code, String info) {
+        this.code = code;
+        this.info = info;
+    }
+
+    /**
+     * 根据编码获取，未匹配返回 DATE
+     */
+    public static KeyLayoutEnum of(String code) {
+        for (KeyLayoutEnum layout : values()) {
+            if (layout.code.equalsIgnoreCase(code)) {
+                return layout;
+            }
+        }
+        return DATE;
+    }
+
+}
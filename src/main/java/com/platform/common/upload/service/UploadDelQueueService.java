@@ -0,0 +1,24 @@
+package com.platform.common.upload.service;
+
+import java.util.List;
+
+/**
+ * 延迟删除服务
+ */
+public interface UploadDelQueueService {
+
+    /**
+     * 加入删除队列，立即返回
+     */
+    void delFile(List<String> dataList);
+
+    /**
+     * 待删除数量
+     */
+    int size();
+
+    /**
+     * 立即删除队列中的文件
+     */
+    void flush();
+}
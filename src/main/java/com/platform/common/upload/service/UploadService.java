@@ -1,12 +1,19 @@
 package com.platform.common.upload.service;
 
 import cn.hutool.core.lang.Dict;
+import com.platform.common.upload.vo.UploadCacheStatsVo;
+import com.platform.common.upload.vo.UploadFileMetaVo;
+import com.platform.common.upload.vo.UploadFileStreamVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 上传服务
@@ -23,6 +30,11 @@ public interface UploadService {
      */
     Dict getFileToken(String fileExt);
 
+    /**
+     * 批量获取上传凭证（同一批次共用签名材料）
+     */
+    List<Dict> getFileTokens(List<String> fileExts);
+
     /**
      * 文件上传
      */
@@ -33,18 +45,88 @@ public interface UploadService {
      */
     UploadFileVo uploadFile(File file);
 
+    /**
+     * 幂等文件上传（相同幂等键的并发请求只上传一次，共享结果）
+     */
+    UploadFileVo uploadFileIdempotent(MultipartFile file, String idempotencyKey);
+
+    /**
+     * 幂等文件上传（相同幂等键的并发请求只上传一次，共享结果）
+     */
+    UploadFileVo uploadFileIdempotent(File file, String idempotencyKey);
+
+    /**
+     * 异步文件上传
+     */
+    CompletableFuture<UploadFileVo> uploadFileAsync(MultipartFile file);
+
+    /**
+     * 异步文件上传
+     */
+    CompletableFuture<UploadFileVo> uploadFileAsync(File file);
+
+    /**
+     * 批量文件上传（结果与入参顺序一致，失败项返回errorMsg）
+     */
+    List<UploadFileVo> uploadFiles(List<File> files);
+
+    /**
+     * 批量文件上传（结果与入参顺序一致，失败项返回errorMsg）
+     */
+    List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> files);
+
     /**
      * 获取文件流
      */
     InputStream getInputStream(String urlPath);
 
+    /**
+     * 获取文件流（指定范围，length小于等于0表示读取到结尾）
+     */
+    InputStream getInputStream(String urlPath, long offset, long length);
+
+    /**
+     * 按存储路径获取文件流（指定范围，length小于等于0表示读取到结尾）
+     */
+    InputStream getFileInputStream(String fileKey, long offset, long length);
+
+    /**
+     * 获取文件元数据（大小、ETag、CRC64等）
+     */
+    UploadFileMetaVo getFileMeta(String fileKey);
+
+    /**
+     * 条件读取文件流（带元数据，满足If-None-Match/If-Modified-Since时返回未修改，不传输文件内容）
+     */
+    UploadFileStreamVo getFileStream(String fileKey, String ifNoneMatch, Date ifModifiedSince);
+
+    /**
+     * 磁盘缓存统计（命中、未命中、淘汰等），未开启时返回null
+     */
+    UploadCacheStatsVo getDiskCacheStats();
+
+    /**
+     * 内存缓存统计（命中、未命中、淘汰、未被准入等），未开启时返回null
+     */
+    UploadCacheStatsVo getMemoryCacheStats();
+
+    /**
+     * 多连接分段下载到本地文件，完成后校验大小和校验值
+     */
+    UploadFileMetaVo downloadToFile(String fileKey, Path target);
+
     /**
      * 删除本地文件
      */
     boolean delFile(File file);
 
     /**
-     * 删除本地文件
+     * 删除文件（全部删除成功返回true）
      */
     boolean delFile(List<String> dataList);
+
+    /**
+     * 批量删除文件，返回每个文件的删除结果
+     */
+    Map<String, Boolean> delFiles(List<String> dataList);
 }
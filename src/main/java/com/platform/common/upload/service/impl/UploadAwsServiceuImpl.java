@@ -1,30 +1,53 @@
 package com.platform.common.upload.service.impl;
 
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.lang.Dict;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.platform.common.upload.enums.UploadTypeEnum;
-import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadServiceu;
+import com.platform.common.upload.utils.ChecksumInputStream;
+import com.platform.common.upload.utils.S3BatchPresigner;
+import com.platform.common.upload.vo.UploadFileMetaVo;
+import com.platform.common.upload.vo.UploadFileStreamVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.*;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
-import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+
+
+
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * AWS S3 上传实现
@@ -33,7 +56,7 @@ import java.util.List;
 @Service("uploadAwsServiceu")
 @Configuration
 @ConditionalOnProperty(prefix = "uploadu", name = "uploadType", havingValue = "aws")
-public class UploadAwsServiceuImpl extends UploadBaseService implements UploadService {
+public class UploadAwsServiceuImpl extends UploadBaseService implements UploadServiceu {
 
     /**
      * AWS 区域
@@ -71,18 +94,130 @@ public class UploadAwsServiceuImpl extends UploadBaseService implements UploadSe
     @Value("${uploadu.cloudfront}")
     private String cf;
 
+    /**
+     * 最大连接数
+     */
+    @Value("${uploadu.maxConnections:1024}")
+    private Integer maxConnections;
+
+    /**
+     * 建立连接超时时间，毫秒
+     */
+    @Value("${uploadu.connectionTimeout:10000}")
+    private Long connectionTimeout;
+
+    /**
+     * 读写数据超时时间，毫秒
+     */
+    @Value("${uploadu.socketTimeout:50000}")
+    private Long socketTimeout;
+
+    /**
+     * 空闲连接回收时间，毫秒
+     */
+    @Value("${uploadu.idleConnectionTime:60000}")
+    private Long idleConnectionTime;
+
+    /**
+     * 连接最大存活时间，毫秒（-1不限制）
+     */
+    @Value("${uploadu.connectionTTL:-1}")
+    private Long connectionTTL;
+
+    /**
+     * 是否开启TCP keep-alive
+     */
+    @Value("${uploadu.tcpKeepAlive:true}")
+    private Boolean tcpKeepAlive;
+
+    /**
+     * 分片上传阈值，超过该大小使用分片上传，字节
+     */
+    @Value("${uploadu.multipartThreshold:16777216}")
+    private Long multipartThreshold;
+
+    /**
+     * 分片大小，字节（不小于5MB）
+     */
+    @Value("${uploadu.partSize:8388608}")
+    private Integer partSize;
+
+    /**
+     * 单个文件的分片并发数
+     */
+    @Value("${uploadu.partTaskNum:4}")
+    private Integer partTaskNum;
+
+    /**
+     * 分片上传线程数
+     */
+    @Value("${uploadu.partThreads:16}")
+    private Integer partThreads;
+
+    /**
+     * 单个分片失败重试次数
+     */
+    @Value("${uploadu.partRetry:3}")
+    private Integer partRetry;
+
+    /**
+     * 所有上传同时在内存中的分片数上限（限制分片上传总内存：partBufferNum × partSize）
+     */
+    @Value("${uploadu.partBufferNum:16}")
+    private Integer partBufferNum;
+
     // 预签名URL的有效期（例如：30分钟）
     private static final int URL_EXPIRY_MINUTES = 30;
 
+    /**
+     * S3客户端（线程安全，全局共享）
+     */
+    private S3Client client;
+
+    /**
+     * 预签名（本地签名，全局共享）
+     */
+    private S3Presigner presigner;
+
     /**
      * 初始化 S3 客户端
      */
-    private S3Client initS3Client() {
-        AwsBasicCredentials awsCreds = AwsBasicCredentials.create(accessKey, secretKey);
-        return S3Client.builder()
+    @PostConstruct
+    public void initS3Client() {
+        StaticCredentialsProvider credentials = StaticCredentialsProvider.create(
+                AwsBasicCredentials.create(accessKey, secretKey));
+        ApacheHttpClient.Builder httpClient = ApacheHttpClient.builder()
+                .maxConnections(maxConnections)
+                .connectionTimeout(Duration.ofMillis(connectionTimeout))
+                .socketTimeout(Duration.ofMillis(socketTimeout))
+                .connectionMaxIdleTime(Duration.ofMillis(idleConnectionTime))
+                .tcpKeepAlive(tcpKeepAlive);
+        if (connectionTTL > 0) {
+            httpClient.connectionTimeToLive(Duration.ofMillis(connectionTTL));
+        }
+        client = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .httpClientBuilder(httpClient)
+                .build();
+        presigner = S3Presigner.builder()
                 .region(Region.of(region))
-                .credentialsProvider(StaticCredentialsProvider.create(awsCreds))
+                .credentialsProvider(credentials)
                 .build();
+        initMultipart(partThreads, partTaskNum, partRetry, partBufferNum);
+    }
+
+    /**
+     * 关闭 S3 客户端
+     */
+    @PreDestroy
+    public void destroyS3Client() {
+        if (presigner != null) {
+            presigner.close();
+        }
+        if (client != null) {
+            client.close();
+        }
     }
 
     @Override
@@ -94,13 +229,7 @@ public class UploadAwsServiceuImpl extends UploadBaseService implements UploadSe
     public Dict getFileToken(String fileExt) {
         try {
             // 1. 生成文件名和存储路径
-            String fileName = getFileName();
-            // 如果fileExt不为空，则添加后缀
-            if (fileExt != null && !fileExt.trim().isEmpty()) {
-                // 处理fileExt可能包含的点号，确保只添加一个点
-                String ext = fileExt.startsWith(".") ? fileExt : "." + fileExt;
-                fileName += ext;
-            }
+            String fileName = getFileName(fileExt);
             String fileKey = getFileKey(prefix, fileName);
 
             // 生成预签名的PUT请求URL，用于客户端直接上传
@@ -109,12 +238,6 @@ public class UploadAwsServiceuImpl extends UploadBaseService implements UploadSe
                     .key(fileKey)
                     .build();
 
-            S3Presigner presigner = S3Presigner.builder()
-                    .region(Region.of(region))
-                    .credentialsProvider(StaticCredentialsProvider.create(
-                            AwsBasicCredentials.create(accessKey, secretKey)))
-                    .build();
-
             PutObjectPresignRequest presignRequest = PutObjectPresignRequest.builder()
                     .signatureDuration(Duration.ofMinutes(URL_EXPIRY_MINUTES))
                     .putObjectRequest(objectRequest)
@@ -122,7 +245,6 @@ public class UploadAwsServiceuImpl extends UploadBaseService implements UploadSe
 
             // 使用正确的类 PresignedPutObjectRequest
             PresignedPutObjectRequest presignedResponse = presigner.presignPutObject(presignRequest);
-            presigner.close();
 
             URL uploadUrl = presignedResponse.url();
 
@@ -143,73 +265,253 @@ public class UploadAwsServiceuImpl extends UploadBaseService implements UploadSe
     }
 
     @Override
-    public UploadFileVo uploadFile(MultipartFile file) {
-        S3Client client = initS3Client();
+    public List<Dict> getFileTokens(List<String> fileExts) {
+        // 同一批次只派生一次签名密钥，逐个文件本地签名
+        S3BatchPresigner batchPresigner = new S3BatchPresigner(accessKey, secretKey, region, URL_EXPIRY_MINUTES * 60);
+        String host = bucket + ".s3." + region + ".amazonaws.com";
+        List<Dict> tokens = new ArrayList<>(fileExts.size());
+        for (String fileExt : fileExts) {
+            String fileKey = getFileKey(prefix, getFileName(fileExt));
+            tokens.add(Dict.create()
+                    .set("uploadType", UploadTypeEnum.AWS)
+                    .set("serverUrl", batchPresigner.presignPut("https", host, "/" + fileKey))
+                    .set("fileKey", fileKey)
+                    .set("cloudFrontUrl", "https://" + cf + "/" + fileKey)
+                    .set("filePath", getServerUrl() + "/" + fileKey));
+        }
+        return tokens;
+    }
+
+    @Override
+    protected UploadFileVo uploadFile(MultipartFile file, String fileKey) {
         try {
             String fileName = getFileName(file);
-            String fileKey = getFileKey(prefix);
-            fileKey = appendFileExtension(fileName, fileKey);
+            if (fileKey == null) {
+                fileKey = appendFileExtension(fileName, getFileKey(prefix));
+            }
 
-            InputStream inputStream = file.getInputStream();
+            // 上传同时计算校验值
+            try (ChecksumInputStream inputStream = new ChecksumInputStream(file.getInputStream())) {
+                if (file.getSize() > multipartThreshold) {
+                    uploadMultipart(fileKey, inputStream, file.getSize());
+                } else {
+                    // 服务端按 CRC32C 尾部校验和校验数据
+                    PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(fileKey)
+                            .checksumAlgorithm(ChecksumAlgorithm.CRC32_C)
+                            .build();
 
+                    client.putObject(putObjectRequest, RequestBody.fromInputStream(inputStream, file.getSize()));
+                }
+                return setChecksum(toFileVo(fileName, fileKey), inputStream, file.getSize());
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("文件上传失败");
+        }
+    }
+
+    @Override
+    protected UploadFileVo uploadFile(File file, String fileKey) {
+        try {
+            String fileName = getFileName(file);
+            if (fileKey == null) {
+                fileKey = appendFileExtension(fileName, getFileKey(prefix));
+            }
+
+            if (file.length() > multipartThreshold) {
+                try (ChecksumInputStream inputStream = new ChecksumInputStream(java.nio.file.Files.newInputStream(file.toPath()))) {
+                    uploadMultipart(fileKey, inputStream, file.length());
+                    return setChecksum(toFileVo(fileName, fileKey), inputStream, file.length());
+                }
+            }
+            // 服务端按 CRC32C 尾部校验和校验数据，由SDK读取文件时计算
             PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                     .bucket(bucket)
                     .key(fileKey)
+                    .checksumAlgorithm(ChecksumAlgorithm.CRC32_C)
                     .build();
 
-            client.putObject(putObjectRequest, software.amazon.awssdk.core.sync.RequestBody.fromInputStream(
-                    inputStream, inputStream.available()));
-
-            return format(fileName, getServerUrl(), fileKey);
+            PutObjectResponse response = client.putObject(putObjectRequest, RequestBody.fromFile(file.toPath()));
+            return toFileVo(fileName, fileKey)
+                    .setCrc32c(response.checksumCRC32C());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
-        } finally {
-            client.close();
         }
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
-        S3Client client = initS3Client();
-        try {
-            String fileName = getFileName(file);
-            String fileKey = getFileKey(prefix);
-            fileKey = appendFileExtension(fileName, fileKey);
+    protected String getContentKey(String hash, String fileName) {
+        return getContentKey(prefix, hash, fileName);
+    }
 
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+    @Override
+    protected boolean exists(String fileKey) {
+        try {
+            client.headObject(HeadObjectRequest.builder()
                     .bucket(bucket)
                     .key(fileKey)
-                    .build();
+                    .build());
+            return true;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
 
-            client.putObject(putObjectRequest, software.amazon.awssdk.core.sync.RequestBody.fromFile(file.toPath()));
+    @Override
+    public InputStream getFileInputStream(String fileKey, long offset, long length) {
+        try {
+            return client.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(fileKey)
+                    // 读取整个文件时为null，不发送Range
+                    .range(getRange(offset, length))
+                    .build());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败");
+        }
+    }
 
-            return format(fileName, getServerUrl(), fileKey);
+    @Override
+    public UploadFileMetaVo getFileMeta(String fileKey) {
+        try {
+            HeadObjectResponse response = client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(fileKey)
+                    .build());
+            return new UploadFileMetaVo()
+                    .setFileKey(fileKey)
+                    .setSize(response.contentLength())
+                    .setEtag(response.eTag())
+                    .setContentType(response.contentType())
+                    .setLastModified(response.lastModified() == null ? null : Date.from(response.lastModified()));
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        } finally {
-            client.close();
+            throw new RuntimeException("获取文件信息失败");
         }
     }
 
+    /**
+     * 条件读取：一次条件 GET，304 时返回未修改
+     */
     @Override
-    public boolean delFile(List<String> dataList) {
-        S3Client client = initS3Client();
+    public UploadFileStreamVo getFileStream(String fileKey, String ifNoneMatch, Date ifModifiedSince) {
+        GetObjectRequest.Builder builder = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(fileKey);
+        // 同 RFC 7232：存在 If-None-Match 时不发送 If-Modified-Since
+        if (StringUtils.hasText(ifNoneMatch)) {
+            builder.ifNoneMatch(ifNoneMatch);
+        } else if (ifModifiedSince != null) {
+            builder.ifModifiedSince(ifModifiedSince.toInstant());
+        }
         try {
-            for (String data : dataList) {
-                DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
-                        .bucket(bucket)
-                        .key(data)
-                        .build();
-                client.deleteObject(deleteObjectRequest);
+            ResponseInputStream<GetObjectResponse> inputStream = client.getObject(builder.build());
+            GetObjectResponse response = inputStream.response();
+            return new UploadFileStreamVo()
+                    .setMeta(new UploadFileMetaVo()
+                            .setFileKey(fileKey)
+                            .setSize(response.contentLength())
+                            .setEtag(response.eTag())
+                            .setContentType(response.contentType())
+                            .setLastModified(response.lastModified() == null ? null : Date.from(response.lastModified())))
+                    .setInputStream(inputStream);
+        } catch (S3Exception e) {
+            if (e.statusCode() != 304) {
+                log.error(e.getMessage(), e);
+                throw new RuntimeException("获取文件流失败");
             }
-            return true;
+            SdkHttpResponse response = e.awsErrorDetails().sdkHttpResponse();
+            return new UploadFileStreamVo()
+                    .setMeta(new UploadFileMetaVo()
+                            .setFileKey(fileKey)
+                            .setEtag(response.firstMatchingHeader("ETag").orElse(null))
+                            .setLastModified(response.firstMatchingHeader("Last-Modified")
+                                    .map(value -> Date.from(ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()))
+                                    .orElse(null)))
+                    .setNotModified(true);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件删除失败");
-        } finally {
-            client.close();
+            throw new RuntimeException("获取文件流失败");
+        }
+    }
+
+    /**
+     * 分片上传，分片并发、重试和失败取消由 uploadMultipart 处理
+     */
+    private void uploadMultipart(String fileKey, InputStream inputStream, long size) throws Exception {
+        String uploadId = client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(fileKey)
+                .build()).uploadId();
+        uploadMultipart(fileKey, inputStream, size, partSize, new MultipartCallback<CompletedPart>() {
+            @Override
+            public CompletedPart uploadPart(int partNumber, byte[] bytes) {
+                UploadPartResponse response = client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(fileKey)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) bytes.length)
+                        .contentMD5(Base64.encode(DigestUtil.md5(bytes)))
+                        .build(), RequestBody.fromBytes(bytes));
+                return CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(response.eTag())
+                        .build();
+            }
+
+            @Override
+            public void complete(List<CompletedPart> parts) {
+                client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(fileKey)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                        .build());
+            }
+
+            @Override
+            public void abort() {
+                client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(fileKey)
+                        .uploadId(uploadId)
+                        .build());
+            }
+        });
+    }
+
+    @Override
+    protected Map<String, Boolean> deleteFiles(List<String> dataList) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        // 单次最多删除1000个
+        for (List<String> keys : ListUtil.partition(dataList, 1000)) {
+            try {
+                List<ObjectIdentifier> objects = keys.stream()
+                        .map(key -> ObjectIdentifier.builder().key(key).build())
+                        .collect(Collectors.toList());
+                DeleteObjectsResponse response = client.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(bucket)
+                        .delete(Delete.builder().objects(objects).quiet(true).build())
+                        .build());
+                // quiet模式只返回删除失败的文件
+                keys.forEach(key -> result.put(key, true));
+                response.errors().forEach(error -> {
+                    log.warn("文件删除失败：{}，{}", error.key(), error.message());
+                    result.put(error.key(), false);
+                });
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                keys.forEach(key -> result.put(key, false));
+            }
         }
+        return result;
     }
 }
@@ -1,39 +1,637 @@
 package com.platform.common.upload.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.lang.Dict;
+import cn.hutool.core.lang.func.Func0;
 import cn.hutool.core.io.file.FileNameUtil;
-import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.platform.common.upload.cache.DiskCache;
+import com.platform.common.upload.cache.MemoryCache;
+import com.platform.common.upload.enums.KeyLayoutEnum;
+import com.platform.common.upload.utils.ChecksumInputStream;
+import com.platform.common.upload.utils.ContentLengthInputStream;
+import com.platform.common.upload.utils.Crc64;
+import com.platform.common.upload.utils.FileKeyGenerator;
+import com.platform.common.upload.utils.SingleFlight;
+import com.platform.common.upload.vo.UploadCacheStatsVo;
+import com.platform.common.upload.vo.UploadFileMetaVo;
+import com.platform.common.upload.vo.UploadFileStreamVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * 基础上传
  */
 @Slf4j
-public class UploadBaseService {
+public abstract class UploadBaseService {
 
     protected static final String DEFAULT_DIR = FileNameUtil.UNIX_SEPARATOR + "file";
 
+    /**
+     * 内容寻址的存储路径
+     */
+    private static final Pattern CONTENT_KEY = Pattern.compile("(?:^|/)([0-9a-f]{2})/\\1[0-9a-f]{62}(?:\\.[^/]*)?$");
+
+    /**
+     * 内容MD5形式的ETag（分片上传的ETag带“-分片数”）
+     */
+    private static final Pattern MD5_ETAG = Pattern.compile("[0-9a-f]{32}");
+
+    /**
+     * 空内容的SHA-256，用于判断实现是否支持内容寻址
+     */
+    private static final String EMPTY_SHA256 = DigestUtil.sha256Hex("");
+
+    /**
+     * 分段下载、分片上传重试的初始、最大等待时间，毫秒
+     */
+    private static final long RETRY_DELAY = 200;
+
+    private static final long RETRY_MAX_DELAY = 3000;
+
+    /**
+     * 通用配置的默认前缀（@Value 中使用）
+     */
+    private static final String CONFIG_PREFIX = "upload";
+
+    @Autowired
+    private Environment environment;
+
+    /**
+     * 异步上传线程数
+     */
+    @Value("${upload.asyncThreads:16}")
+    private Integer asyncThreads;
+
+    /**
+     * 异步上传排队数
+     */
+    @Value("${upload.asyncQueue:1024}")
+    private Integer asyncQueue;
+
+    /**
+     * 批量上传并发数
+     */
+    @Value("${upload.batchParallelism:8}")
+    private Integer batchParallelism;
+
+    /**
+     * 逐个删除（无批量删除接口的存储）线程数
+     */
+    @Value("${upload.deleteThreads:8}")
+    private Integer deleteThreads;
+
+    /**
+     * 内容去重：按内容哈希生成存储路径，已存在时跳过上传
+     */
+    @Value("${upload.dedupe:false}")
+    private Boolean dedupe;
+
+    /**
+     * 存储路径布局：date/shard_date/date_shard
+     */
+    @Value("${upload.keyLayout:date}")
+    private String keyLayout;
+
+    /**
+     * 分片目录数量
+     */
+    @Value("${upload.keyShards:16}")
+    private Integer keyShards;
+
+    /**
+     * 存储路径布局
+     */
+    private KeyLayoutEnum layout = KeyLayoutEnum.DATE;
+
+    /**
+     * 下载建立连接超时时间，毫秒
+     */
+    @Value("${upload.downloadConnectTimeout:5000}")
+    private Long downloadConnectTimeout;
+
+    /**
+     * 下载读取超时时间（两次读取数据的最大间隔），毫秒
+     */
+    @Value("${upload.downloadReadTimeout:30000}")
+    private Long downloadReadTimeout;
+
+    /**
+     * 下载整体超时时间（含读取响应体），毫秒，0表示不限制
+     */
+    @Value("${upload.downloadCallTimeout:300000}")
+    private Long downloadCallTimeout;
+
+    /**
+     * 下载连接池最大空闲连接数
+     */
+    @Value("${upload.downloadMaxIdleConnections:32}")
+    private Integer downloadMaxIdleConnections;
+
+    /**
+     * 下载空闲连接保活时间，毫秒
+     */
+    @Value("${upload.downloadKeepAlive:300000}")
+    private Long downloadKeepAlive;
+
+    /**
+     * 多连接下载分段大小，字节
+     */
+    @Value("${upload.downloadPartSize:8388608}")
+    private Long downloadPartSize;
+
+    /**
+     * 多连接下载线程数
+     */
+    @Value("${upload.downloadThreads:8}")
+    private Integer downloadThreads;
+
+    /**
+     * 分段下载失败重试次数
+     */
+    @Value("${upload.downloadPartRetry:3}")
+    private Integer downloadPartRetry;
+
+    /**
+     * 文件流磁盘缓存（getInputStream 读穿缓存）
+     */
+    @Value("${upload.diskCache:false}")
+    private Boolean diskCacheEnabled;
+
+    /**
+     * 磁盘缓存目录（按上传服务分子目录）
+     */
+    @Value("${upload.diskCacheDir:${java.io.tmpdir}/upload-cache}")
+    private String diskCacheDir;
+
+    /**
+     * 磁盘缓存总大小上限，字节
+     */
+    @Value("${upload.diskCacheSize:1073741824}")
+    private Long diskCacheSize;
+
+    /**
+     * 小文件内存缓存（getInputStream 优先读取，其次磁盘缓存）
+     */
+    @Value("${upload.memoryCache:false}")
+    private Boolean memoryCacheEnabled;
+
+    /**
+     * 内存缓存总大小上限，字节
+     */
+    @Value("${upload.memoryCacheSize:67108864}")
+    private Long memoryCacheSize;
+
+    /**
+     * 内存缓存单个文件大小上限，字节
+     */
+    @Value("${upload.memoryCacheObjectSize:65536}")
+    private Integer memoryCacheObjectSize;
+
+    /**
+     * 内存缓存有效期，毫秒
+     */
+    @Value("${upload.memoryCacheTtl:600000}")
+    private Long memoryCacheTtl;
+
+    /**
+     * 异步上传线程池（每个上传服务独立）
+     */
+    private ThreadPoolExecutor asyncExecutor;
+
+    /**
+     * 逐个删除线程池
+     */
+    private ThreadPoolExecutor deleteExecutor;
+
+    /**
+     * 分段下载线程池
+     */
+    private ThreadPoolExecutor downloadExecutor;
+
+    /**
+     * 下载客户端（连接池复用，支持HTTP/2，自动处理gzip）
+     */
+    private OkHttpClient httpClient;
+
+    /**
+     * 进行中的上传（相同内容或幂等键的并发上传合并为一次）
+     */
+    private final SingleFlight<UploadFileVo> inflight = new SingleFlight<>();
+
+    /**
+     * 文件流磁盘缓存（未开启时为null）
+     */
+    private DiskCache diskCache;
+
+    /**
+     * 小文件内存缓存（未开启时为null）
+     */
+    private MemoryCache memoryCache;
+
+    /**
+     * 分片上传线程池（由支持分片并发上传的实现初始化）
+     */
+    private ThreadPoolExecutor partExecutor;
+
+    /**
+     * 单个文件的分片并发数
+     */
+    private int partTaskNum;
+
+    /**
+     * 单个分片失败重试次数
+     */
+    private int partRetry;
+
+    /**
+     * 已读入内存的分片（所有上传共享，限制分片上传占用的总内存）
+     */
+    private Semaphore partBuffer;
+
+    /**
+     * 初始化异步上传、分段下载、删除线程池、下载客户端和缓存
+     */
+    @PostConstruct
+    public void initBase() {
+        bindConfig();
+        String name = ClassUtils.getUserClass(this).getSimpleName();
+        asyncExecutor = newExecutor(name + "-async-", asyncThreads, asyncQueue);
+        downloadExecutor = newExecutor(name + "-download-", downloadThreads);
+        deleteExecutor = newExecutor(name + "-delete-", deleteThreads);
+        layout = KeyLayoutEnum.of(keyLayout);
+        httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(downloadMaxIdleConnections, downloadKeepAlive, TimeUnit.MILLISECONDS))
+                .connectTimeout(downloadConnectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(downloadReadTimeout, TimeUnit.MILLISECONDS)
+                .callTimeout(downloadCallTimeout, TimeUnit.MILLISECONDS)
+                .build();
+        if (Boolean.TRUE.equals(diskCacheEnabled)) {
+            diskCache = new DiskCache(name, Paths.get(diskCacheDir, name), diskCacheSize);
+        }
+        if (Boolean.TRUE.equals(memoryCacheEnabled)) {
+            memoryCache = new MemoryCache(name, memoryCacheSize, memoryCacheObjectSize, memoryCacheTtl);
+        }
+    }
+
+    /**
+     * 配置前缀，取自实现类的 @ConditionalOnProperty（upload / uploadu）
+     */
+    protected String getConfigPrefix() {
+        ConditionalOnProperty condition = AnnotationUtils.findAnnotation(ClassUtils.getUserClass(this), ConditionalOnProperty.class);
+        return condition == null || condition.prefix().isEmpty() ? CONFIG_PREFIX : condition.prefix();
+    }
+
+    /**
+     * 通用配置按实现类的前缀重新读取，未配置时使用 @Value 中的默认值
+     */
+    private void bindConfig() {
+        String prefix = getConfigPrefix();
+        if (environment == null || CONFIG_PREFIX.equals(prefix)) {
+            return;
+        }
+        for (Field field : UploadBaseService.class.getDeclaredFields()) {
+            Value value = field.getAnnotation(Value.class);
+            if (value == null) {
+                continue;
+            }
+            String text = environment.resolvePlaceholders(
+                    value.value().replace("${" + CONFIG_PREFIX + ".", "${" + prefix + "."));
+            ReflectUtil.setFieldValue(this, field, Convert.convert(field.getType(), text));
+        }
+    }
+
+    /**
+     * 关闭异步上传、分段下载、删除、分片上传线程池和下载客户端
+     */
+    @PreDestroy
+    public void destroyBase() {
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+        if (downloadExecutor != null) {
+            downloadExecutor.shutdownNow();
+        }
+        if (deleteExecutor != null) {
+            deleteExecutor.shutdown();
+        }
+        if (partExecutor != null) {
+            partExecutor.shutdown();
+        }
+        if (httpClient != null) {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+
+    /**
+     * 获取服务端域名
+     */
+    public abstract String getServerUrl();
+
+    /**
+     * 获取上传凭证
+     */
+    public abstract Dict getFileToken(String fileExt);
+
+    /**
+     * 批量获取上传凭证
+     * 默认逐个生成，支持本地签名的实现可覆盖为一次性批量签名
+     */
+    public List<Dict> getFileTokens(List<String> fileExts) {
+        return fileExts.stream()
+                .map(this::getFileToken)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 文件上传
+     */
+    public UploadFileVo uploadFile(MultipartFile file) {
+        return dedupeUpload(getFileName(file), file::getInputStream, fileKey -> uploadFile(file, fileKey));
+    }
+
+    /**
+     * 文件上传
+     */
+    public UploadFileVo uploadFile(File file) {
+        return dedupeUpload(getFileName(file), () -> FileUtil.getInputStream(file), fileKey -> uploadFile(file, fileKey));
+    }
+
+    /**
+     * 幂等文件上传
+     * 相同幂等键的并发请求只有一个实际上传，其余等待并共享结果
+     */
+    public UploadFileVo uploadFileIdempotent(MultipartFile file, String idempotencyKey) {
+        if (StringUtils.isEmpty(idempotencyKey)) {
+            return uploadFile(file);
+        }
+        return share(getFileName(file), "idempotent:" + idempotencyKey, () -> uploadFile(file));
+    }
+
+    /**
+     * 幂等文件上传
+     * 相同幂等键的并发请求只有一个实际上传，其余等待并共享结果
+     */
+    public UploadFileVo uploadFileIdempotent(File file, String idempotencyKey) {
+        if (StringUtils.isEmpty(idempotencyKey)) {
+            return uploadFile(file);
+        }
+        return share(getFileName(file), "idempotent:" + idempotencyKey, () -> uploadFile(file));
+    }
+
+    /**
+     * 文件上传，fileKey 为空时生成新的存储路径
+     */
+    protected abstract UploadFileVo uploadFile(MultipartFile file, String fileKey);
+
+    /**
+     * 文件上传，fileKey 为空时生成新的存储路径
+     */
+    protected abstract UploadFileVo uploadFile(File file, String fileKey);
+
+    /**
+     * 内容去重上传
+     * 流式计算内容哈希作为存储路径，对象已存在时直接返回，不再传输
+     * 相同内容的并发上传只检查、传输一次
+     */
+    private UploadFileVo dedupeUpload(String fileName, Func0<InputStream> source, Function<String, UploadFileVo> upload) {
+        // 不支持内容寻址的实现（如FastDFS）不读取计算哈希
+        if (!dedupe || getContentKey(EMPTY_SHA256, fileName) == null) {
+            return upload.apply(null);
+        }
+        String fileKey;
+        long size;
+        String md5;
+        String crc32c;
+        String crc64;
+        // 同一次读取计算内容哈希和校验值（用于校验已存在对象和返回结果）
+        try (ChecksumInputStream inputStream = new ChecksumInputStream(source.call())) {
+            fileKey = getContentKey(DigestUtil.sha256Hex(inputStream), fileName);
+            size = inputStream.getCount();
+            md5 = inputStream.getMd5();
+            crc32c = inputStream.getCrc32c();
+            crc64 = inputStream.getCrc64();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("文件上传失败");
+        }
+        return share(fileName, fileKey, () -> {
+            try {
+                if (exists(fileKey)) {
+                    if (isSameContent(getFileMeta(fileKey), size, md5, crc64, source)) {
+                        log.debug("文件已存在，跳过上传：{}", fileKey);
+                        return toFileVo(fileName, fileKey)
+                                .setMd5(md5)
+                                .setCrc32c(crc32c)
+                                .setCrc64(crc64);
+                    }
+                    // 内容不一致（如客户端按路径预先写入）或无法校验时重新上传覆盖
+                    log.warn("已存在文件校验不一致，重新上传：{}", fileKey);
+                }
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                throw new RuntimeException("文件上传失败");
+            }
+            return upload.apply(fileKey);
+        });
+    }
+
+    /**
+     * 合并并发上传，返回结果使用各自的文件名
+     */
+    private UploadFileVo share(String fileName, String key, Supplier<UploadFileVo> upload) {
+        UploadFileVo fileVo = inflight.execute(key, upload);
+        return BeanUtil.copyProperties(fileVo, UploadFileVo.class)
+                .setFileName(fileName);
+    }
+
+    /**
+     * 内容寻址的存储路径，返回空表示不支持去重
+     */
+    protected String getContentKey(String hash, String fileName) {
+        return null;
+    }
+
+    /**
+     * 对象是否存在
+     */
+    protected boolean exists(String fileKey) throws Exception {
+        return false;
+    }
+
+    /**
+     * 已存在的对象是否与待上传内容一致
+     * 大小一致且 CRC64 一致，或 ETag 为内容MD5（非分片上传）且一致；都无法校验时视为不一致
+     *
+     * @param source 待上传内容（ETag 算法特殊的实现可重新读取计算）
+     */
+    protected boolean isSameContent(UploadFileMetaVo meta, long size, String md5, String crc64,
+                                    Func0<InputStream> source) throws Exception {
+        if (meta.getSize() == null || meta.getSize() != size) {
+            return false;
+        }
+        if (meta.getCrc64() != null) {
+            return meta.getCrc64().equals(crc64);
+        }
+        String etag = meta.getEtag() == null ? null : meta.getEtag().replace("\"", "").toLowerCase();
+        return etag != null && MD5_ETAG.matcher(etag).matches() && etag.equals(md5);
+    }
+
+    /**
+     * 是否为内容寻址的存储路径（.../哈希前2位/sha256.ext）
+     */
+    protected static boolean isContentKey(String fileKey) {
+        return fileKey != null && CONTENT_KEY.matcher(fileKey).find();
+    }
+
+    /**
+     * 组装返回对象
+     */
+    protected UploadFileVo toFileVo(String fileName, String fileKey) {
+        return format(fileName, getServerUrl(), fileKey);
+    }
+
+    /**
+     * 异步文件上传
+     * 上传完成前 MultipartFile 需保持有效，控制器可直接返回该 CompletableFuture
+     */
+    public CompletableFuture<UploadFileVo> uploadFileAsync(MultipartFile file) {
+        return supplyAsync(() -> uploadFile(file));
+    }
+
+    /**
+     * 异步文件上传
+     */
+    public CompletableFuture<UploadFileVo> uploadFileAsync(File file) {
+        return supplyAsync(() -> uploadFile(file));
+    }
+
+    /**
+     * 批量文件上传
+     */
+    public List<UploadFileVo> uploadFiles(List<File> files) {
+        return uploadBatch(files, this::uploadFile, UploadBaseService::getFileName);
+    }
+
+    /**
+     * 批量文件上传
+     */
+    public List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> files) {
+        return uploadBatch(files, this::uploadFile, UploadBaseService::getFileName);
+    }
+
+    /**
+     * 批量上传
+     * 最多 batchParallelism 个文件同时上传，单个失败不影响其他文件，结果与入参顺序一致
+     */
+    private <T> List<UploadFileVo> uploadBatch(List<T> files, Function<T, UploadFileVo> upload, Function<T, String> fileName) {
+        Semaphore semaphore = new Semaphore(batchParallelism);
+        List<CompletableFuture<UploadFileVo>> futures = new ArrayList<>(files.size());
+        for (T file : files) {
+            semaphore.acquireUninterruptibly();
+            CompletableFuture<UploadFileVo> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> upload.apply(file), asyncExecutor);
+            } catch (RejectedExecutionException e) {
+                // 线程池繁忙时由当前线程上传
+                future = new CompletableFuture<>();
+                try {
+                    future.complete(upload.apply(file));
+                } catch (Exception ex) {
+                    future.completeExceptionally(ex);
+                }
+            }
+            futures.add(future.handle((fileVo, e) -> {
+                semaphore.release();
+                if (e == null) {
+                    return fileVo;
+                }
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                return new UploadFileVo()
+                        .setFileName(fileName.apply(file))
+                        .setErrorMsg(cause.getMessage());
+            }));
+        }
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 提交异步上传任务，排队已满时拒绝
+     */
+    private CompletableFuture<UploadFileVo> supplyAsync(Supplier<UploadFileVo> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, asyncExecutor);
+        } catch (RejectedExecutionException e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("上传任务繁忙，请稍后重试");
+        }
+    }
+
     /**
      * 获取文件名称
      */
     protected static String getFileName(MultipartFile file) {
         String fileName = file.getOriginalFilename();
         if (StringUtils.isEmpty(fileName)) {
-            fileName = IdUtil.objectId();
+            fileName = FileKeyGenerator.nextId();
         }
         return fileName;
     }
@@ -44,7 +642,7 @@ public class UploadBaseService {
     protected static String getFileName(File file) {
         String fileName = file.getName();
         if (StringUtils.isEmpty(fileName)) {
-            fileName = IdUtil.objectId();
+            fileName = FileKeyGenerator.nextId();
         }
         return fileName;
     }
@@ -53,13 +651,27 @@ public class UploadBaseService {
      * 获取文件名称
      */
     protected static String getFileName() {
-        return IdUtil.objectId();
+        return FileKeyGenerator.nextId();
+    }
+
+    /**
+     * 获取文件名称（带后缀）
+     */
+    protected static String getFileName(String fileExt) {
+        String fileName = getFileName();
+        // 如果fileExt不为空，则添加后缀
+        if (fileExt != null && !fileExt.trim().isEmpty()) {
+            // 处理fileExt可能包含的点号，确保只添加一个点
+            String ext = fileExt.startsWith(".") ? fileExt : "." + fileExt;
+            fileName += ext;
+        }
+        return fileName;
     }
 
     /**
      * 获取文件全名
      */
-    protected static String getFileKey(String prefix) {
+    protected String getFileKey(String prefix) {
         String fileName = getFileName();
         return getFileKey(prefix, fileName);
     }
@@ -67,46 +679,378 @@ public class UploadBaseService {
     /**
      * 获取文件全名
      */
-    protected static String getFileKey(String prefix, String fileName) {
-        // 获取当前UTC时间并转换为东8区时间
-        ZonedDateTime zonedDateTime = ZonedDateTime.now(ZoneId.of("Asia/Shanghai"));
-        DateTimeFormatter yearMonthFormatter = DateTimeFormatter.ofPattern("yyyyMM");
-        DateTimeFormatter dayFormatter = DateTimeFormatter.ofPattern("dd");
-        DateTimeFormatter hourFormatter = DateTimeFormatter.ofPattern("HH");
+    protected String getFileKey(String prefix, String fileName) {
+        return FileKeyGenerator.fileKey(prefix, fileName, layout, keyShards);
+    }
 
+    /**
+     * 内容寻址的存储路径：prefix/hash前2位/hash.后缀
+     */
+    protected static String getContentKey(String prefix, String hash, String fileName) {
         StringBuilder builder = new StringBuilder();
         if (!StringUtils.isEmpty(prefix)) {
-            builder.append(prefix);
-            builder.append(FileNameUtil.UNIX_SEPARATOR);
+            builder.append(prefix).append(FileNameUtil.UNIX_SEPARATOR);
         }
-        builder.append(zonedDateTime.format(yearMonthFormatter))
-                .append(FileNameUtil.UNIX_SEPARATOR)
-                .append(zonedDateTime.format(dayFormatter))
-                .append(FileNameUtil.UNIX_SEPARATOR)
-                .append(zonedDateTime.format(hourFormatter))
-                .append(FileNameUtil.UNIX_SEPARATOR);
-        return builder.toString() + fileName;
+        builder.append(hash, 0, 2).append(FileNameUtil.UNIX_SEPARATOR).append(hash);
+        return appendFileExtension(fileName, builder.toString());
     }
 
     /**
-     * 获取文件流
+     * 获取文件流（开启缓存时依次读取内存缓存、磁盘缓存）
      */
     public InputStream getInputStream(String urlPath) {
+        Supplier<InputStream> remote = () -> getInputStream(new Request.Builder().url(urlPath).build(), 0, 0);
+        Supplier<InputStream> loader = diskCache == null ? remote : () -> diskCache.get(urlPath, remote);
+        return memoryCache == null ? loader.get() : memoryCache.get(urlPath, loader);
+    }
+
+    /**
+     * 文件流磁盘缓存（命中、未命中、字节数等统计），未开启时返回null
+     */
+    public DiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * 磁盘缓存统计，未开启时返回null
+     */
+    public UploadCacheStatsVo getDiskCacheStats() {
+        if (diskCache == null) {
+            return null;
+        }
+        return new UploadCacheStatsVo()
+                .setCount(diskCache.getCount())
+                .setSize(diskCache.getSize())
+                .setHitCount(diskCache.getHitCount())
+                .setMissCount(diskCache.getMissCount())
+                .setHitBytes(diskCache.getHitBytes())
+                .setLoadBytes(diskCache.getLoadBytes())
+                .setEvictionCount(diskCache.getEvictionCount())
+                .setBypassCount(diskCache.getBypassCount());
+    }
+
+    /**
+     * 内存缓存统计，未开启时返回null
+     */
+    public UploadCacheStatsVo getMemoryCacheStats() {
+        if (memoryCache == null) {
+            return null;
+        }
+        return new UploadCacheStatsVo()
+                .setCount(memoryCache.getCount())
+                .setSize(memoryCache.getSize())
+                .setHitCount(memoryCache.getHitCount())
+                .setMissCount(memoryCache.getMissCount())
+                .setHitBytes(memoryCache.getHitBytes())
+                .setEvictionCount(memoryCache.getEvictionCount())
+                .setRejectCount(memoryCache.getRejectCount());
+    }
+
+    /**
+     * 小文件内存缓存（命中、未命中、淘汰等统计），未开启时返回null
+     */
+    public MemoryCache getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * 获取文件流（指定范围）
+     */
+    public InputStream getInputStream(String urlPath, long offset, long length) {
+        Request.Builder builder = new Request.Builder()
+                .url(urlPath)
+                // 范围按原始字节计算，不使用gzip
+                .header("Accept-Encoding", "identity");
+        String range = getRange(offset, length);
+        if (range != null) {
+            builder.header("Range", range);
+        }
+        return getInputStream(builder.build(), offset, length);
+    }
+
+    /**
+     * 按存储路径获取文件流（指定范围）
+     * 默认通过访问地址读取，支持原生范围读取的实现可覆盖
+     */
+    public InputStream getFileInputStream(String fileKey, long offset, long length) {
+        return getInputStream(toFileVo(null, fileKey).getFilePath(), offset, length);
+    }
+
+    /**
+     * 获取文件元数据
+     * 默认通过访问地址 HEAD 请求获取，支持原生接口的实现可覆盖
+     */
+    public UploadFileMetaVo getFileMeta(String fileKey) {
+        Request request = new Request.Builder()
+                .url(toFileVo(null, fileKey).getFilePath())
+                .header("Accept-Encoding", "identity")
+                .head()
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IllegalStateException("获取文件信息失败：" + request.url() + "，" + response.code());
+            }
+            return toFileMeta(fileKey, response);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件信息失败");
+        }
+    }
+
+    /**
+     * 条件读取文件流
+     * 默认对访问地址发送一次条件 GET，304 时返回未修改，否则返回响应头中的元数据和文件流；支持原生接口的实现可覆盖
+     *
+     * @param ifNoneMatch     客户端缓存的ETag（可为多个、*，为空表示不校验）
+     * @param ifModifiedSince 客户端缓存的最后修改时间（为空表示不校验）
+     */
+    public UploadFileStreamVo getFileStream(String fileKey, String ifNoneMatch, Date ifModifiedSince) {
+        return getFileStream(fileKey, toFileVo(null, fileKey).getFilePath(), ifNoneMatch, ifModifiedSince);
+    }
+
+    /**
+     * 对指定地址发送条件 GET（同 RFC 7232：存在 If-None-Match 时不发送 If-Modified-Since）
+     */
+    protected UploadFileStreamVo getFileStream(String fileKey, String urlPath, String ifNoneMatch, Date ifModifiedSince) {
+        Request.Builder builder = new Request.Builder()
+                .url(urlPath)
+                .header("Accept-Encoding", "identity");
+        if (!StringUtils.isEmpty(ifNoneMatch)) {
+            builder.header("If-None-Match", ifNoneMatch);
+        } else if (ifModifiedSince != null) {
+            builder.header("If-Modified-Since", DateUtil.formatHttpDate(ifModifiedSince));
+        }
+        Request request = builder.build();
+        Response response = null;
+        try {
+            response = httpClient.newCall(request).execute();
+            if (response.code() == 304) {
+                response.close();
+                return new UploadFileStreamVo()
+                        .setMeta(new UploadFileMetaVo()
+                                .setFileKey(fileKey)
+                                .setEtag(response.header("ETag"))
+                                .setLastModified(response.headers().getDate("Last-Modified")))
+                        .setNotModified(true);
+            }
+            if (!response.isSuccessful()) {
+                throw new IllegalStateException("获取文件流失败：" + request.url() + "，" + response.code());
+            }
+            return new UploadFileStreamVo()
+                    .setMeta(toFileMeta(fileKey, response))
+                    // 关闭流时释放连接回连接池
+                    .setInputStream(response.body().byteStream());
+        } catch (Exception e) {
+            if (response != null) {
+                response.close();
+            }
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败");
+        }
+    }
+
+    /**
+     * 按元数据判断的条件读取，适用于元数据在本地获取、不需要额外请求的实现
+     */
+    protected UploadFileStreamVo getFileStreamByMeta(String fileKey, String ifNoneMatch, Date ifModifiedSince) {
+        UploadFileMetaVo meta = getFileMeta(fileKey);
+        UploadFileStreamVo streamVo = new UploadFileStreamVo().setMeta(meta);
+        if (isNotModified(meta, ifNoneMatch, ifModifiedSince)) {
+            return streamVo.setNotModified(true);
+        }
+        // 已知大小时按大小读取，避免再次查询
+        return streamVo.setInputStream(getFileInputStream(fileKey, 0, meta.getSize() == null ? 0 : meta.getSize()));
+    }
+
+    /**
+     * 响应头中的元数据
+     */
+    private static UploadFileMetaVo toFileMeta(String fileKey, Response response) {
+        String length = response.header("Content-Length");
+        return new UploadFileMetaVo()
+                .setFileKey(fileKey)
+                .setSize(length == null ? null : Long.valueOf(length))
+                .setEtag(response.header("ETag"))
+                .setCrc64(response.header("x-oss-hash-crc64ecma", response.header("x-cos-hash-crc64ecma")))
+                .setContentType(response.header("Content-Type"))
+                .setLastModified(response.headers().getDate("Last-Modified"));
+    }
+
+    /**
+     * 是否未修改（RFC 7232：存在 If-None-Match 时忽略 If-Modified-Since，ETag 弱比较）
+     */
+    protected static boolean isNotModified(UploadFileMetaVo meta, String ifNoneMatch, Date ifModifiedSince) {
+        if (!StringUtils.isEmpty(ifNoneMatch)) {
+            if ("*".equals(ifNoneMatch.trim())) {
+                return true;
+            }
+            if (meta.getEtag() == null) {
+                return false;
+            }
+            String etag = normalizeEtag(meta.getEtag());
+            for (String item : ifNoneMatch.split(",")) {
+                if (etag.equals(normalizeEtag(item))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (ifModifiedSince == null || meta.getLastModified() == null) {
+            return false;
+        }
+        // HTTP 日期精度为秒
+        return meta.getLastModified().getTime() / 1000 <= ifModifiedSince.getTime() / 1000;
+    }
+
+    /**
+     * 去掉弱校验前缀和引号（各存储返回的ETag有无引号不一致）
+     */
+    private static String normalizeEtag(String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * 多连接下载到本地文件
+     * 按 downloadPartSize 分段并发读取，按位置写入预分配的文件，单段失败从已写入位置重试，完成后校验大小和CRC64
+     */
+    public UploadFileMetaVo downloadToFile(String fileKey, Path target) {
+        UploadFileMetaVo meta = getFileMeta(fileKey);
+        Long size = meta.getSize();
         try {
-            URL url = new URL(urlPath);
-            HttpURLConnection httpURLConnection = (HttpURLConnection) url.openConnection();
-            // 设置网络连接超时时间
-            httpURLConnection.setConnectTimeout(5000);
-            // 设置应用程序要从网络连接读取数据
-            httpURLConnection.setDoInput(true);
-            // 从服务器返回一个输入流
-            return httpURLConnection.getInputStream();
+            try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+                // 预分配文件
+                file.setLength(size == null ? 0 : size);
+                FileChannel channel = file.getChannel();
+                if (size == null) {
+                    // 大小未知时单连接下载
+                    downloadRange(fileKey, channel, 0, 0);
+                } else {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (long offset = 0; offset < size; offset += downloadPartSize) {
+                        long start = offset;
+                        long length = Math.min(downloadPartSize, size - offset);
+                        futures.add(downloadExecutor.submit(() -> {
+                            downloadRange(fileKey, channel, start, length);
+                            return null;
+                        }));
+                    }
+                    try {
+                        for (Future<?> future : futures) {
+                            future.get();
+                        }
+                    } catch (Exception e) {
+                        futures.forEach(future -> future.cancel(true));
+                        throw e;
+                    }
+                }
+            }
+            if (size != null && Files.size(target) != size) {
+                throw new IllegalStateException("文件大小不一致：" + fileKey);
+            }
+            if (meta.getCrc64() != null && !meta.getCrc64().equals(crc64(target))) {
+                throw new IllegalStateException("文件校验失败：" + fileKey);
+            }
+            return meta;
         } catch (Exception e) {
+            FileUtil.del(target);
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("下载文件失败");
+        }
+    }
+
+    /**
+     * 下载一个分段，length小于等于0表示读取到结尾
+     */
+    private void downloadRange(String fileKey, FileChannel channel, long offset, long length) throws Exception {
+        byte[] buffer = new byte[65536];
+        long written = 0;
+        for (int retry = 1; ; retry++) {
+            try (InputStream inputStream = getFileInputStream(fileKey, offset + written, length > 0 ? length - written : 0)) {
+                int n;
+                while ((length <= 0 || written < length)
+                        && (n = inputStream.read(buffer, 0, length > 0 ? (int) Math.min(buffer.length, length - written) : buffer.length)) != -1) {
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, n);
+                    while (byteBuffer.hasRemaining()) {
+                        written += channel.write(byteBuffer, offset + written);
+                    }
+                }
+                if (length > 0 && written < length) {
+                    throw new EOFException("分段数据不完整：" + (offset + written));
+                }
+                return;
+            } catch (Exception e) {
+                // 首次失败后最多重试 downloadPartRetry 次
+                if (retry > downloadPartRetry || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                log.warn("分段下载失败，准备重试：{}，offset={}，retry={}", fileKey, offset + written, retry);
+                retryDelay(retry);
+            }
+        }
+    }
+
+    /**
+     * 计算文件CRC64
+     */
+    private static String crc64(Path path) throws IOException {
+        Crc64 crc64 = new Crc64();
+        byte[] buffer = new byte[65536];
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                crc64.update(buffer, 0, n);
+            }
+        }
+        return crc64.getValueString();
+    }
+
+    private InputStream getInputStream(Request request, long offset, long length) {
+        Response response = null;
+        try {
+            response = httpClient.newCall(request).execute();
+            if (!response.isSuccessful()) {
+                throw new IllegalStateException("获取文件流失败：" + request.url() + "，" + response.code());
+            }
+            // 关闭流时释放连接回连接池
+            InputStream inputStream = response.body().byteStream();
+            if (response.code() != 206 && request.header("Range") != null) {
+                // 服务端不支持范围读取时跳过并截取
+                IOUtils.skipFully(inputStream, offset);
+                if (length > 0) {
+                    inputStream = new BoundedInputStream(inputStream, length);
+                }
+                return inputStream;
+            }
+            long contentLength = response.body().contentLength();
+            // 带上Content-Length，磁盘缓存据此跳过超过上限的文件
+            return contentLength < 0 ? inputStream : new ContentLengthInputStream(inputStream, contentLength);
+        } catch (Exception e) {
+            if (response != null) {
+                response.close();
+            }
             log.error(e.getMessage(), e);
             throw new RuntimeException("获取文件流失败");
         }
     }
 
+    /**
+     * Range请求头：bytes=offset-end，length小于等于0表示到结尾
+     * 读取整个文件时返回null，不发送Range（空文件的 bytes=0- 会返回416）
+     */
+    protected static String getRange(long offset, long length) {
+        if (offset <= 0 && length <= 0) {
+            return null;
+        }
+        return "bytes=" + offset + "-" + (length > 0 ? String.valueOf(offset + length - 1) : "");
+    }
+
     /**
      * 封装对象
      */
@@ -118,6 +1062,18 @@ public class UploadBaseService {
                 .setFilePath(serverUrl + FileNameUtil.UNIX_SEPARATOR + fileKey);
     }
 
+    /**
+     * 设置校验值（数据完整经过校验流时）
+     */
+    protected static UploadFileVo setChecksum(UploadFileVo fileVo, ChecksumInputStream inputStream, long size) {
+        if (inputStream.getCount() == size) {
+            fileVo.setMd5(inputStream.getMd5())
+                    .setCrc32c(inputStream.getCrc32c())
+                    .setCrc64(inputStream.getCrc64());
+        }
+        return fileVo;
+    }
+
     /**
      * 处理文件名后缀并添加到fileKey
      * @param fileName 原始文件名
@@ -138,6 +1094,207 @@ public class UploadBaseService {
         return fileKey;
     }
 
+    /**
+     * 初始化分片并发上传
+     *
+     * @param threads 分片上传线程数
+     * @param taskNum 单个文件的分片并发数
+     * @param retry   单个分片失败重试次数
+     * @param bufferNum 所有上传同时在内存中的分片数上限
+     */
+    protected void initMultipart(int threads, int taskNum, int retry, int bufferNum) {
+        partExecutor = newExecutor(ClassUtils.getUserClass(this).getSimpleName() + "-part-", threads);
+        partTaskNum = taskNum;
+        partRetry = retry;
+        partBuffer = new Semaphore(bufferNum);
+    }
+
+    /**
+     * 分片上传
+     * 按顺序读取分片并提交到线程池并发上传，同一文件最多 partTaskNum 个分片、所有上传最多 partBufferNum 个分片在内存中，
+     * 任一分片重试后仍失败则取消上传，避免残留未完成的分片
+     *
+     * @param partSize 分片大小，超大文件自动放大（最多10000个分片）
+     * @param callback 分片上传、合并、取消
+     */
+    protected <P> void uploadMultipart(String fileKey, InputStream inputStream, long size, long partSize,
+                                       MultipartCallback<P> callback) throws Exception {
+        List<Future<P>> futures = new ArrayList<>();
+        try {
+            DataInputStream dataInputStream = new DataInputStream(inputStream);
+            Semaphore semaphore = new Semaphore(partTaskNum);
+            long partLength = Math.max(partSize, (size + 9999) / 10000);
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += partLength, partNumber++) {
+                semaphore.acquire();
+                try {
+                    partBuffer.acquire();
+                } catch (InterruptedException e) {
+                    semaphore.release();
+                    throw e;
+                }
+                byte[] bytes;
+                int number = partNumber;
+                try {
+                    bytes = new byte[(int) Math.min(partLength, size - offset)];
+                    dataInputStream.readFully(bytes);
+                    futures.add(partExecutor.submit(() -> {
+                        try {
+                            return uploadPart(fileKey, number, bytes, callback);
+                        } finally {
+                            partBuffer.release();
+                            semaphore.release();
+                        }
+                    }));
+                } catch (Exception | Error e) {
+                    partBuffer.release();
+                    semaphore.release();
+                    throw e;
+                }
+            }
+            List<P> parts = new ArrayList<>(futures.size());
+            for (Future<P> future : futures) {
+                parts.add(future.get());
+            }
+            callback.complete(parts);
+        } catch (Exception e) {
+            futures.forEach(future -> future.cancel(true));
+            try {
+                callback.abort();
+            } catch (Exception abortException) {
+                log.error("取消分片上传失败：" + fileKey, abortException);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 上传分片（失败重试）
+     */
+    private <P> P uploadPart(String fileKey, int partNumber, byte[] bytes, MultipartCallback<P> callback) throws Exception {
+        for (int retry = 1; ; retry++) {
+            try {
+                return callback.uploadPart(partNumber, bytes);
+            } catch (Exception e) {
+                // 首次失败后最多重试 partRetry 次
+                if (retry > partRetry || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                log.warn("分片上传失败，准备重试：{}，part={}，retry={}", fileKey, partNumber, retry);
+                retryDelay(retry);
+            }
+        }
+    }
+
+    /**
+     * 重试前退避等待：200ms起倍增，最多3秒
+     */
+    private static void retryDelay(int retry) throws InterruptedException {
+        Thread.sleep(Math.min(RETRY_MAX_DELAY, RETRY_DELAY << Math.min(retry - 1, 4)));
+    }
+
+    /**
+     * 分片上传回调
+     */
+    protected interface MultipartCallback<P> {
+
+        /**
+         * 上传分片
+         */
+        P uploadPart(int partNumber, byte[] bytes) throws Exception;
+
+        /**
+         * 合并分片（按分片号顺序）
+         */
+        void complete(List<P> parts) throws Exception;
+
+        /**
+         * 取消分片上传
+         */
+        void abort() throws Exception;
+    }
+
+    /**
+     * 创建固定大小的线程池
+     */
+    protected static ThreadPoolExecutor newExecutor(String name, int threads) {
+        return newExecutor(name, threads, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 创建固定大小、有界队列的线程池
+     */
+    protected static ThreadPoolExecutor newExecutor(String name, int threads, int queueCapacity) {
+        return ExecutorBuilder.create()
+                .setCorePoolSize(threads)
+                .setMaxPoolSize(threads)
+                .setWorkQueue(new LinkedBlockingQueue<>(queueCapacity))
+                .setThreadFactory(ThreadUtil.newNamedThreadFactory(name, false))
+                .build();
+    }
+
+    /**
+     * 批量删除文件
+     * 开启内容去重时，内容寻址的文件可能被多处引用，跳过删除并视为已处理（返回true，删除队列不再重试）
+     */
+    public Map<String, Boolean> delFiles(List<String> dataList) {
+        if (!dedupe) {
+            return deleteFiles(dataList);
+        }
+        List<String> deletable = dataList.stream()
+                .filter(data -> !isContentKey(data))
+                .collect(Collectors.toList());
+        Map<String, Boolean> deleted = deletable.isEmpty() ? new LinkedHashMap<>() : deleteFiles(deletable);
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        for (String data : dataList) {
+            if (isContentKey(data)) {
+                log.debug("内容去重文件可能被多处引用，跳过删除：{}", data);
+                result.put(data, true);
+            } else {
+                result.put(data, Boolean.TRUE.equals(deleted.get(data)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量删除文件（各存储实现）
+     */
+    protected abstract Map<String, Boolean> deleteFiles(List<String> dataList);
+
+    /**
+     * 删除文件（全部删除成功返回true）
+     */
+    public boolean delFile(List<String> dataList) {
+        return !delFiles(dataList).containsValue(false);
+    }
+
+    /**
+     * 并发逐个删除（适用于没有批量删除接口的存储）
+     * 在独立线程池中执行，最多 deleteThreads × 2 个删除排队，避免大批量删除堆积任务
+     */
+    protected Map<String, Boolean> delFilesParallel(List<String> dataList, Predicate<String> delete) {
+        Semaphore semaphore = new Semaphore(deleteThreads * 2);
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(dataList.size());
+        for (String data : dataList) {
+            semaphore.acquireUninterruptibly();
+            futures.add(CompletableFuture.supplyAsync(() -> delete.test(data), deleteExecutor)
+                    .handle((deleted, e) -> {
+                        semaphore.release();
+                        if (e == null) {
+                            return deleted;
+                        }
+                        log.error("文件删除失败：" + data, e instanceof CompletionException ? e.getCause() : e);
+                        return false;
+                    }));
+        }
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        for (int i = 0; i < futures.size(); i++) {
+            result.put(dataList.get(i), futures.get(i).join());
+        }
+        return result;
+    }
+
     /**
      * 删除本地文件
      */
@@ -1,32 +1,47 @@
 package com.platform.common.upload.service.impl;
 
-import cn.hutool.core.date.DateField;
-import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.file.FileNameUtil;
 import cn.hutool.core.lang.Dict;
 import com.platform.common.upload.enums.UploadTypeEnum;
 import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.utils.ChecksumInputStream;
+import com.platform.common.upload.utils.CosBatchPresigner;
+import com.platform.common.upload.vo.UploadFileMetaVo;
+import com.platform.common.upload.vo.UploadFileStreamVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import com.qcloud.cos.COSClient;
 import com.qcloud.cos.auth.BasicCOSCredentials;
-import com.qcloud.cos.http.HttpMethodName;
+import com.qcloud.cos.exception.MultiObjectDeleteException;
+import com.qcloud.cos.http.HttpProtocol;
+import com.qcloud.cos.model.COSObject;
 import com.qcloud.cos.model.DeleteObjectsRequest;
+import com.qcloud.cos.model.GetObjectRequest;
 import com.qcloud.cos.model.ObjectMetadata;
 import com.qcloud.cos.model.PutObjectRequest;
 import com.qcloud.cos.region.Region;
+import com.qcloud.cos.transfer.TransferManager;
+import com.qcloud.cos.transfer.TransferManagerConfiguration;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.InputStream;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 腾讯云上传
@@ -68,12 +83,63 @@ public class UploadCosServiceImpl extends UploadBaseService implements UploadSer
     @Value("${upload.region}")
     private String region;
 
+    /**
+     * 最大连接数
+     */
+    @Value("${upload.maxConnections:1024}")
+    private Integer maxConnections;
+    /**
+     * 分片上传阈值，超过该大小使用分片并发上传，字节
+     */
+    @Value("${upload.multipartThreshold:16777216}")
+    private Long multipartThreshold;
+    /**
+     * 分片大小，字节
+     */
+    @Value("${upload.partSize:8388608}")
+    private Long partSize;
+    /**
+     * 分片上传线程数
+     */
+    @Value("${upload.partThreads:16}")
+    private Integer partThreads;
+
+    /**
+     * cos客户端（线程安全，全局共享）
+     */
+    private COSClient client;
+
+    /**
+     * 分片上传管理
+     */
+    private TransferManager transferManager;
+
     /**
      * 初始化cos
      */
-    private COSClient initCOS() {
-        return new COSClient(new BasicCOSCredentials(accessKey, secretKey),
-                new com.qcloud.cos.ClientConfig(new Region(region)));
+    @PostConstruct
+    public void initCOS() {
+        com.qcloud.cos.ClientConfig clientConfig = new com.qcloud.cos.ClientConfig(new Region(region));
+        clientConfig.setMaxConnectionsCount(maxConnections);
+        // 预签名上传地址同样使用https
+        clientConfig.setHttpProtocol(HttpProtocol.https);
+        client = new COSClient(new BasicCOSCredentials(accessKey, secretKey), clientConfig);
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMultipartUploadThreshold(multipartThreshold);
+        configuration.setMinimumUploadPartSize(partSize);
+        transferManager = new TransferManager(client, newExecutor("cos-part-", partThreads), true);
+        transferManager.setConfiguration(configuration);
+    }
+
+    /**
+     * 关闭cos
+     */
+    @PreDestroy
+    public void destroyCOS() {
+        if (transferManager != null) {
+            // 同时关闭线程池和cos客户端
+            transferManager.shutdownNow(true);
+        }
     }
 
     @Override
@@ -83,104 +149,184 @@ public class UploadCosServiceImpl extends UploadBaseService implements UploadSer
 
     @Override
     public Dict getFileToken(String fileExt) {
-        String fileName = getFileName();
-        // 如果fileExt不为空，则添加后缀
-        if (fileExt != null && !fileExt.trim().isEmpty()) {
-            // 处理fileExt可能包含的点号，确保只添加一个点
-            String ext = fileExt.startsWith(".") ? fileExt : "." + fileExt;
-            fileName += ext;
+        return getFileTokens(Collections.singletonList(fileExt)).get(0);
+    }
+
+    @Override
+    public List<Dict> getFileTokens(List<String> fileExts) {
+        // 同一批次共用签名有效期和SignKey，逐个文件本地签名，签名在半个小时后过期
+        CosBatchPresigner batchPresigner = new CosBatchPresigner(accessKey, secretKey, TimeUnit.MINUTES.toSeconds(30));
+        com.qcloud.cos.ClientConfig clientConfig = client.getClientConfig();
+        String scheme = clientConfig.getHttpProtocol().name();
+        String host = clientConfig.getEndpointBuilder().buildGeneralApiEndpoint(bucket);
+        List<Dict> tokens = new ArrayList<>(fileExts.size());
+        for (String fileExt : fileExts) {
+            String fileKey = getFileKey(prefix, getFileName(fileExt));
+            tokens.add(Dict.create()
+                    .set("uploadType", UploadTypeEnum.COS)
+                    .set("serverUrl", batchPresigner.presignPut(scheme, host, FileNameUtil.UNIX_SEPARATOR + fileKey))
+                    .set("filePath", serverUrl + FileNameUtil.UNIX_SEPARATOR + fileKey));
+        }
+        return tokens;
+    }
+
+    @Override
+    protected UploadFileVo uploadFile(MultipartFile file, String fileKey) {
+        String fileName = getFileName(file);
+        if (fileKey == null) {
+            fileKey = getFileKey(prefix);
+            //fileKey=appendFileExtension(fileName,fileKey);
         }
-        String fileKey = getFileKey(prefix, fileName);
-        String fileHost;
-        COSClient client = null;
         try {
-            client = initCOS();
-            // 这里设置签名在半个小时后过期
-            Date expired = DateUtil.offset(DateUtil.date(), DateField.MINUTE, 30);
-            // 生成预览URL地址
-            URL url = client.generatePresignedUrl(bucket, fileKey, expired, HttpMethodName.PUT);
-            fileHost = url.toString();
+            if (file.getSize() > multipartThreshold) {
+                // 大文件落盘后分片并发上传
+                File tempFile = File.createTempFile("cos-", ".tmp");
+                try (ChecksumInputStream inputStream = new ChecksumInputStream(file.getInputStream())) {
+                    // 落盘的同时计算校验值
+                    FileUtil.writeFromStream(inputStream, tempFile, false);
+                    transferManager.upload(new PutObjectRequest(bucket, fileKey, tempFile))
+                            .waitForUploadResult();
+                    return setChecksum(toFileVo(fileName, fileKey), inputStream, file.getSize());
+                } finally {
+                    FileUtil.del(tempFile);
+                }
+            } else {
+                //上传到腾讯云，指定长度避免SDK缓冲整个流
+                ObjectMetadata objectMetadata = new ObjectMetadata();
+                objectMetadata.setContentLength(file.getSize());
+                // 上传同时计算校验值，SDK 默认按 ETag 校验 MD5
+                try (ChecksumInputStream inputStream = new ChecksumInputStream(file.getInputStream())) {
+                    client.putObject(new PutObjectRequest(bucket, fileKey, inputStream, objectMetadata));
+                    return setChecksum(toFileVo(fileName, fileKey), inputStream, file.getSize());
+                }
+            }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
-        } finally {
-            if (client != null) {
-                client.shutdown();
-            }
         }
-        return Dict.create()
-                .set("uploadType", UploadTypeEnum.COS)
-                .set("serverUrl", fileHost)
-                .set("filePath", serverUrl + FileNameUtil.UNIX_SEPARATOR + fileKey);
     }
 
     @Override
-    public UploadFileVo uploadFile(MultipartFile file) {
+    protected UploadFileVo uploadFile(File file, String fileKey) {
         String fileName = getFileName(file);
-        String fileKey = getFileKey(prefix);
-        //fileKey=appendFileExtension(fileName,fileKey);
-        // 3 生成 cos 客户端。
-        COSClient client = null;
+        if (fileKey == null) {
+            fileKey = appendFileExtension(fileName, getFileKey(prefix));
+        }
         try {
-            client = initCOS();
-            //上传到腾讯云
-            PutObjectRequest putObjectRequest = new PutObjectRequest(bucket
-                    , fileKey, file.getInputStream(), new ObjectMetadata());
-            client.putObject(putObjectRequest);
-            return format(fileName, serverUrl, fileKey);
+            if (file.length() > multipartThreshold) {
+                // 超过阈值时分片并发上传，分片并发读取文件，不返回校验值（避免为校验值再读一次文件）
+                transferManager.upload(new PutObjectRequest(bucket, fileKey, file))
+                        .waitForUploadResult();
+                return toFileVo(fileName, fileKey);
+            }
+            //上传到腾讯云，上传同时计算校验值
+            ObjectMetadata objectMetadata = new ObjectMetadata();
+            objectMetadata.setContentLength(file.length());
+            try (ChecksumInputStream inputStream = new ChecksumInputStream(FileUtil.getInputStream(file))) {
+                client.putObject(new PutObjectRequest(bucket, fileKey, inputStream, objectMetadata));
+                return setChecksum(toFileVo(fileName, fileKey), inputStream, file.length());
+            }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
-        } finally {
-            if (client != null) {
-                client.shutdown();
+        }
+    }
+
+    @Override
+    protected String getContentKey(String hash, String fileName) {
+        return getContentKey(prefix, hash, fileName);
+    }
+
+    @Override
+    protected boolean exists(String fileKey) {
+        return client.doesObjectExist(bucket, fileKey);
+    }
+
+    @Override
+    public InputStream getFileInputStream(String fileKey, long offset, long length) {
+        try {
+            GetObjectRequest request = new GetObjectRequest(bucket, fileKey);
+            // 读取整个文件时不指定范围；结束位置超过文件大小时读取到结尾
+            if (offset > 0 || length > 0) {
+                request.setRange(offset, length > 0 ? offset + length - 1 : Long.MAX_VALUE);
             }
+            return client.getObject(request).getObjectContent();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败");
         }
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
-        String fileName = getFileName(file);
-        String fileKey = getFileKey(prefix);
-        fileKey=appendFileExtension(fileName,fileKey);
-        InputStream inputStream = FileUtil.getInputStream(file);
-        // 3 生成 cos 客户端。
-        COSClient client = null;
+    public UploadFileMetaVo getFileMeta(String fileKey) {
         try {
-            client = initCOS();
-            //上传到腾讯云
-            PutObjectRequest putObjectRequest = new PutObjectRequest(bucket
-                    , fileKey, inputStream, new ObjectMetadata());
-            client.putObject(putObjectRequest);
-            return format(fileName, serverUrl, fileKey);
+            return toFileMeta(fileKey, client.getObjectMetadata(bucket, fileKey));
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        } finally {
-            if (client != null) {
-                client.shutdown();
-            }
+            throw new RuntimeException("获取文件信息失败");
         }
     }
 
+    /**
+     * 条件读取：一次条件 GET，304 时 SDK 返回null（不返回响应头，元数据仅有文件名称）
+     */
     @Override
-    public boolean delFile(List<String> dataList) {
-        COSClient client = null;
+    public UploadFileStreamVo getFileStream(String fileKey, String ifNoneMatch, Date ifModifiedSince) {
+        GetObjectRequest request = new GetObjectRequest(bucket, fileKey);
+        // 同 RFC 7232：存在 If-None-Match 时不发送 If-Modified-Since
+        if (StringUtils.hasText(ifNoneMatch)) {
+            request.setNonmatchingETagConstraints(Collections.singletonList(ifNoneMatch));
+        } else if (ifModifiedSince != null) {
+            request.setModifiedSinceConstraint(ifModifiedSince);
+        }
         try {
-            client = initCOS();
-            // 生成预览URL地址
-            DeleteObjectsRequest deleteObjectRequest = new DeleteObjectsRequest(bucket);
-            deleteObjectRequest.withKeys(dataList.toArray(new String[0]));
-            client.deleteObjects(deleteObjectRequest);
+            COSObject object = client.getObject(request);
+            if (object == null) {
+                return new UploadFileStreamVo()
+                        .setMeta(new UploadFileMetaVo().setFileKey(fileKey))
+                        .setNotModified(true);
+            }
+            return new UploadFileStreamVo()
+                    .setMeta(toFileMeta(fileKey, object.getObjectMetadata()))
+                    .setInputStream(object.getObjectContent());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        } finally {
-            if (client != null) {
-                client.shutdown();
+            throw new RuntimeException("获取文件流失败");
+        }
+    }
+
+    private static UploadFileMetaVo toFileMeta(String fileKey, ObjectMetadata metadata) {
+        Object crc64 = metadata.getRawMetadataValue("x-cos-hash-crc64ecma");
+        return new UploadFileMetaVo()
+                .setFileKey(fileKey)
+                .setSize(metadata.getContentLength())
+                .setEtag(metadata.getETag())
+                .setCrc64(crc64 == null ? null : crc64.toString())
+                .setContentType(metadata.getContentType())
+                .setLastModified(metadata.getLastModified());
+    }
+
+    @Override
+    protected Map<String, Boolean> deleteFiles(List<String> dataList) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        // 单次最多删除1000个
+        for (List<String> keys : ListUtil.partition(dataList, 1000)) {
+            keys.forEach(key -> result.put(key, false));
+            DeleteObjectsRequest deleteObjectRequest = new DeleteObjectsRequest(bucket);
+            deleteObjectRequest.setQuiet(false);
+            deleteObjectRequest.withKeys(keys.toArray(new String[0]));
+            try {
+                client.deleteObjects(deleteObjectRequest).getDeletedObjects()
+                        .forEach(deleted -> result.put(deleted.getKey(), true));
+            } catch (MultiObjectDeleteException e) {
+                // 部分删除失败
+                e.getDeletedObjects().forEach(deleted -> result.put(deleted.getKey(), true));
+                e.getErrors().forEach(error -> log.warn("文件删除失败：{}，{}", error.getKey(), error.getMessage()));
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
             }
         }
-        return false;
+        return result;
     }
 
 }
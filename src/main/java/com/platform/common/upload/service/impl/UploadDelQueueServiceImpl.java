@@ -0,0 +1,257 @@
+package com.platform.common.upload.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import com.platform.common.upload.service.UploadDelQueueService;
+import com.platform.common.upload.service.UploadService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟删除
+ * 删除请求先写入本地日志并立即返回，后台按数量或时间窗口合并后批量删除，失败重试，重启后从日志恢复
+ */
+@Slf4j
+@Service("uploadDelQueueService")
+@ConditionalOnProperty(prefix = "upload", name = "delQueue", havingValue = "true")
+public class UploadDelQueueServiceImpl implements UploadDelQueueService {
+
+    @Autowired
+    private UploadService uploadService;
+
+    /**
+     * 单批删除数量，达到后立即删除
+     */
+    @Value("${upload.delQueueBatchSize:1000}")
+    private Integer batchSize;
+
+    /**
+     * 删除间隔，毫秒
+     */
+    @Value("${upload.delQueueInterval:5000}")
+    private Long interval;
+
+    /**
+     * 失败重试次数
+     */
+    @Value("${upload.delQueueRetry:3}")
+    private Integer retry;
+
+    /**
+     * 本地日志（默认在应用目录下，临时目录重启后可能被清理）
+     */
+    @Value("${upload.delQueueJournal:${user.dir}/data/upload-del-queue.journal}")
+    private String journal;
+
+    /**
+     * 待删除文件
+     */
+    private final Set<String> pending = new LinkedHashSet<>();
+
+    /**
+     * 删除中的文件（已从待删除中取出，结果返回前仍需保留在日志中）
+     */
+    private final Set<String> inflight = new HashSet<>();
+
+    /**
+     * 失败次数
+     */
+    private final Map<String, Integer> failures = new HashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    private BufferedWriter journalWriter;
+
+    /**
+     * 已关闭，之后的删除请求只写入日志，下次启动时处理
+     */
+    private boolean closed;
+
+    @PostConstruct
+    public void init() throws IOException {
+        File journalFile = FileUtil.touch(journal);
+        // 恢复重启前未删除的文件
+        pending.addAll(FileUtil.readUtf8Lines(journalFile));
+        pending.remove("");
+        journalWriter = openJournal();
+        scheduler = Executors.newSingleThreadScheduledExecutor(ThreadUtil.newNamedThreadFactory("upload-del-queue-", true));
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        if (!pending.isEmpty()) {
+            log.info("延迟删除恢复{}个文件", pending.size());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        synchronized (this) {
+            closed = true;
+        }
+        scheduler.shutdown();
+        try {
+            // 等待执行中的删除结束，再处理剩余文件
+            if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("延迟删除未在1分钟内结束");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        synchronized (this) {
+            if (journalWriter != null) {
+                journalWriter.close();
+                journalWriter = null;
+            }
+        }
+    }
+
+    @Override
+    public void delFile(List<String> dataList) {
+        boolean full;
+        synchronized (this) {
+            try {
+                List<String> added = new ArrayList<>(dataList.size());
+                for (String data : dataList) {
+                    if (pending.add(data)) {
+                        added.add(data);
+                    }
+                }
+                if (journalWriter == null) {
+                    // 已关闭：直接追加到日志
+                    Files.write(new File(journal).toPath(), added, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                } else {
+                    for (String data : added) {
+                        journalWriter.write(data);
+                        journalWriter.newLine();
+                    }
+                    journalWriter.flush();
+                }
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+                throw new RuntimeException("文件删除失败");
+            }
+            full = !closed && pending.size() >= batchSize;
+        }
+        if (full) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    @Override
+    public void flush() {
+        while (true) {
+            List<String> batch = new ArrayList<>(batchSize);
+            synchronized (this) {
+                Iterator<String> iterator = pending.iterator();
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    String data = iterator.next();
+                    batch.add(data);
+                    inflight.add(data);
+                    iterator.remove();
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            Map<String, Boolean> result;
+            try {
+                result = uploadService.delFiles(batch);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                result = new HashMap<>();
+            }
+            int success = 0;
+            synchronized (this) {
+                inflight.removeAll(batch);
+                for (String data : batch) {
+                    if (Boolean.TRUE.equals(result.get(data))) {
+                        failures.remove(data);
+                        success++;
+                        continue;
+                    }
+                    int count = failures.merge(data, 1, Integer::sum);
+                    if (count < retry) {
+                        pending.add(data);
+                    } else {
+                        failures.remove(data);
+                        log.error("文件删除失败，已放弃：{}", data);
+                    }
+                }
+                compactJournal();
+            }
+            // 本批全部失败时等待下次调度，避免存储异常时空转
+            if (success == 0) {
+                return;
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 重写日志，只保留待删除和删除中的文件（并发 flush 时其他批次的文件仍未完成）
+     */
+    private void compactJournal() {
+        try {
+            if (journalWriter != null) {
+                journalWriter.close();
+            }
+            List<String> lines = new ArrayList<>(inflight.size() + pending.size());
+            lines.addAll(inflight);
+            lines.addAll(pending);
+            File tempFile = new File(journal + ".tmp");
+            Files.write(tempFile.toPath(), lines, StandardCharsets.UTF_8);
+            Files.move(tempFile.toPath(), new File(journal).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        } finally {
+            try {
+                // 关闭后不再保持打开
+                journalWriter = closed ? null : openJournal();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private BufferedWriter openJournal() throws IOException {
+        return Files.newBufferedWriter(new File(journal).toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+}
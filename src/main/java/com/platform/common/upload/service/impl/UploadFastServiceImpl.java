@@ -1,10 +1,13 @@
 package com.platform.common.upload.service.impl;
 
 import cn.hutool.core.lang.Dict;
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
 import com.github.tobato.fastdfs.domain.fdfs.StorePath;
 import com.platform.common.upload.enums.UploadTypeEnum;
 import com.platform.common.upload.service.UploadService;
 import com.platform.common.upload.utils.FastUtils;
+import com.platform.common.upload.vo.UploadFileMetaVo;
+import com.platform.common.upload.vo.UploadFileStreamVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,7 +18,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.InputStream;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * fast上传
@@ -45,7 +51,7 @@ public class UploadFastServiceImpl extends UploadBaseService implements UploadSe
     }
 
     @Override
-    public UploadFileVo uploadFile(MultipartFile file) {
+    protected UploadFileVo uploadFile(MultipartFile file, String fileKey) {
         StorePath storePath;
         try {
             storePath = FastUtils.uploadFile(file);
@@ -53,13 +59,13 @@ public class UploadFastServiceImpl extends UploadBaseService implements UploadSe
             log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
         }
-        String fileKey = storePath.getFullPath();
+        fileKey = storePath.getFullPath();
         String fileName = getFileName(file);
         return format(fileName, serverUrl, fileKey);
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
+    protected UploadFileVo uploadFile(File file, String fileKey) {
         StorePath storePath;
         try {
             storePath = FastUtils.uploadFile(file);
@@ -68,13 +74,51 @@ public class UploadFastServiceImpl extends UploadBaseService implements UploadSe
             throw new RuntimeException("文件上传失败");
         }
         String fileName = getFileName(file);
-        String fileKey = storePath.getFullPath();
+        fileKey = storePath.getFullPath();
         return format(fileName, serverUrl, fileKey);
     }
 
     @Override
-    public boolean delFile(List<String> dataList) {
-        return false;
+    public InputStream getFileInputStream(String fileKey, long offset, long length) {
+        try {
+            return FastUtils.downloadFile(fileKey, offset, length);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败");
+        }
+    }
+
+    @Override
+    public UploadFileMetaVo getFileMeta(String fileKey) {
+        try {
+            FileInfo fileInfo = FastUtils.getFileInfo(fileKey);
+            return new UploadFileMetaVo()
+                    .setFileKey(fileKey)
+                    .setSize(fileInfo.getFileSize())
+                    // 以文件CRC32作为ETag
+                    .setEtag("\"" + Integer.toHexString(fileInfo.getCrc32()) + "\"")
+                    // createTime单位为秒
+                    .setLastModified(new Date(fileInfo.getCreateTime() * 1000));
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件信息失败");
+        }
+    }
+
+    /**
+     * 条件读取：先查询文件信息判断，读取时按已知大小下载，不再重复查询
+     */
+    @Override
+    public UploadFileStreamVo getFileStream(String fileKey, String ifNoneMatch, Date ifModifiedSince) {
+        return getFileStreamByMeta(fileKey, ifNoneMatch, ifModifiedSince);
+    }
+
+    @Override
+    protected Map<String, Boolean> deleteFiles(List<String> dataList) {
+        return delFilesParallel(dataList, data -> {
+            FastUtils.deleteFile(data);
+            return true;
+        });
     }
 
 }
@@ -1,15 +1,24 @@
 package com.platform.common.upload.service.impl;
 
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.io.file.FileNameUtil;
 import cn.hutool.core.lang.Dict;
+import cn.hutool.core.lang.func.Func0;
+import com.platform.common.upload.cache.TokenCache;
 import com.platform.common.upload.enums.UploadTypeEnum;
 import com.platform.common.upload.service.UploadServiceu;
+import com.platform.common.upload.utils.ChecksumInputStream;
+import com.platform.common.upload.vo.UploadFileMetaVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import com.qiniu.common.QiniuException;
 import com.qiniu.http.Response;
 import com.qiniu.storage.BucketManager;
 import com.qiniu.storage.UploadManager;
+import com.qiniu.storage.model.BatchStatus;
+import com.qiniu.storage.model.FileInfo;
 import com.qiniu.util.Auth;
+import com.qiniu.util.Etag;
+import com.qiniu.util.StringMap;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -17,8 +26,14 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
 import java.io.File;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 七牛云上传
@@ -59,19 +74,78 @@ public class UploadKodoServiceuImpl extends UploadBaseService implements UploadS
      */
     @Value("${uploadu.prefix:}")
     private String prefix;
+    /**
+     * 分片上传阈值，超过该大小使用分片流式上传，字节
+     */
+    @Value("${uploadu.multipartThreshold:4194304}")
+    private Integer multipartThreshold;
+    /**
+     * 分片大小，字节
+     */
+    @Value("${uploadu.partSize:4194304}")
+    private Integer partSize;
+    /**
+     * 分片并发数
+     */
+    @Value("${uploadu.partTaskNum:4}")
+    private Integer partTaskNum;
+
+    /**
+     * 上传凭证有效期，秒
+     */
+    private static final long TOKEN_EXPIRE_SECONDS = 3600;
+
+    /**
+     * 上传凭证缓存，过期前5分钟重新生成
+     */
+    private final TokenCache<String> tokenCache = new TokenCache<>("kodo", TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * 鉴权（线程安全，全局共享）
+     */
+    private Auth auth;
+
+    /**
+     * 上传管理（线程安全，全局共享）
+     */
+    private UploadManager uploadManager;
+
+    /**
+     * 空间管理（线程安全，全局共享）
+     */
+    private BucketManager bucketManager;
+
+    /**
+     * 初始化上传管理、空间管理
+     */
+    @PostConstruct
+    public void initKodo() {
+        com.qiniu.storage.Configuration configuration = new com.qiniu.storage.Configuration();
+        configuration.putThreshold = multipartThreshold;
+        configuration.resumableUploadAPIVersion = com.qiniu.storage.Configuration.ResumableUploadAPIVersion.V2;
+        configuration.resumableUploadAPIV2BlockSize = partSize;
+        configuration.resumableUploadMaxConcurrentTaskCount = partTaskNum;
+        uploadManager = new UploadManager(configuration);
+        auth = Auth.create(accessKey, secretKey);
+        bucketManager = new BucketManager(auth, new com.qiniu.storage.Configuration());
+    }
 
     /**
-     * 获取Auth
+     * 获取客户端上传Token
+     * 只能上传到指定的key且不能覆盖已有文件，本地签名不缓存
      */
-    private Auth getAuth() {
-        return Auth.create(accessKey, secretKey);
+    private String getClientToken(String fileKey) {
+        return auth.uploadToken(bucket, fileKey, TOKEN_EXPIRE_SECONDS, new StringMap().put("insertOnly", 1));
     }
 
     /**
-     * 获取Token
+     * 获取Token（仅用于服务端上传）
+     * 按文件所在目录生成前缀凭证并缓存，同一目录下的文件共用
      */
     private String getToken(String fileKey) {
-        return getAuth().uploadToken(bucket, fileKey);
+        String scope = fileKey.substring(0, fileKey.lastIndexOf(FileNameUtil.UNIX_SEPARATOR) + 1);
+        return tokenCache.get(scope, TimeUnit.SECONDS.toMillis(TOKEN_EXPIRE_SECONDS),
+                expireAt -> auth.uploadToken(bucket, scope, TOKEN_EXPIRE_SECONDS, new StringMap().put("isPrefixalScope", 1)));
     }
 
     @Override
@@ -89,7 +163,7 @@ public class UploadKodoServiceuImpl extends UploadBaseService implements UploadS
             fileName += ext;
         }
         String fileKey = getFileKey(prefix, fileName);
-        String token = getToken(fileKey);
+        String token = getClientToken(fileKey);
         return Dict.create()
                 .set("uploadType", UploadTypeEnum.KODO)
                 .set("serverUrl", region)
@@ -99,17 +173,18 @@ public class UploadKodoServiceuImpl extends UploadBaseService implements UploadS
     }
 
     @Override
-    public UploadFileVo uploadFile(MultipartFile file) {
+    protected UploadFileVo uploadFile(MultipartFile file, String fileKey) {
         String fileName = getFileName(file);
-        String fileKey = getFileKey(prefix);
-        fileKey=appendFileExtension(fileName,fileKey);
+        if (fileKey == null) {
+            fileKey = appendFileExtension(fileName, getFileKey(prefix));
+        }
         String token = getToken(fileKey);
 
         Response response = null;
-        try {
-            UploadManager uploadManager = new UploadManager(new com.qiniu.storage.Configuration());
-            response = uploadManager.put(file.getBytes(), fileKey, token);
-            return format(fileName, serverUrl, fileKey);
+        try (ChecksumInputStream inputStream = new ChecksumInputStream(file.getInputStream())) {
+            // 小文件表单上传，大文件按分片流式上传，内存占用不超过 分片大小*并发数
+            response = uploadManager.put(inputStream, file.getSize(), fileKey, token, null, null, false);
+            return setChecksum(toFileVo(fileName, fileKey), inputStream, file.getSize());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
@@ -121,17 +196,17 @@ public class UploadKodoServiceuImpl extends UploadBaseService implements UploadS
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
+    protected UploadFileVo uploadFile(File file, String fileKey) {
         String fileName = getFileName(file);
-        String fileKey = getFileKey(prefix);
-        fileKey=appendFileExtension(fileName,fileKey);
+        if (fileKey == null) {
+            fileKey = appendFileExtension(fileName, getFileKey(prefix));
+        }
         String token = getToken(fileKey);
 
         Response response = null;
         try {
-            UploadManager uploadManager = new UploadManager(new com.qiniu.storage.Configuration());
             response = uploadManager.put(file, fileKey, token);
-            return format(fileName, serverUrl, fileKey);
+            return toFileVo(fileName, fileKey);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
@@ -143,21 +218,77 @@ public class UploadKodoServiceuImpl extends UploadBaseService implements UploadS
     }
 
     @Override
-    public boolean delFile(List<String> dataList) {
-        Auth auth = getAuth();
-        BucketManager bucketManager = new BucketManager(auth, new com.qiniu.storage.Configuration());
-        BucketManager.BatchOperations operations = new BucketManager.BatchOperations();
-        dataList.forEach(data -> {
-            operations.addDeleteOp(bucket, data);
-        });
+    protected String getContentKey(String hash, String fileName) {
+        return getContentKey(prefix, hash, fileName);
+    }
+
+    @Override
+    protected boolean exists(String fileKey) throws QiniuException {
         try {
-            bucketManager.batch(operations);
-        } catch (QiniuException ex) {
-            //如果遇到异常，说明删除失败
-            System.err.println(ex.code());
-            System.err.println(ex.response.toString());
+            bucketManager.stat(bucket, fileKey);
+            return true;
+        } catch (QiniuException e) {
+            // 612：文件不存在
+            if (e.code() == 612) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected boolean isSameContent(UploadFileMetaVo meta, long size, String md5, String crc64,
+                                    Func0<InputStream> source) throws Exception {
+        if (meta.getSize() == null || meta.getSize() != size) {
+            return false;
+        }
+        // 七牛 ETag 为分块 SHA1（qetag），重新读取计算
+        try (InputStream inputStream = source.call()) {
+            return Etag.stream(inputStream, size).equals(meta.getEtag());
+        }
+    }
+
+    @Override
+    public UploadFileMetaVo getFileMeta(String fileKey) {
+        try {
+            FileInfo fileInfo = bucketManager.stat(bucket, fileKey);
+            return new UploadFileMetaVo()
+                    .setFileKey(fileKey)
+                    .setSize(fileInfo.fsize)
+                    .setEtag(fileInfo.hash)
+                    .setContentType(fileInfo.mimeType)
+                    // putTime单位为100纳秒
+                    .setLastModified(new Date(fileInfo.putTime / 10000));
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件信息失败");
+        }
+    }
+
+    @Override
+    protected Map<String, Boolean> deleteFiles(List<String> dataList) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        // 单次最多1000个操作
+        for (List<String> keys : ListUtil.partition(dataList, 1000)) {
+            keys.forEach(key -> result.put(key, false));
+            BucketManager.BatchOperations operations = new BucketManager.BatchOperations();
+            keys.forEach(key -> operations.addDeleteOp(bucket, key));
+            Response response = null;
+            try {
+                response = bucketManager.batch(operations);
+                BatchStatus[] statuses = response.jsonToObject(BatchStatus[].class);
+                for (int i = 0; i < statuses.length; i++) {
+                    result.put(keys.get(i), statuses[i].code == 200);
+                }
+            } catch (QiniuException e) {
+                log.error(e.getMessage(), e);
+            } finally {
+                if (response != null) {
+                    response.close();
+                }
+            }
         }
-        return false;
+        return result;
     }
 
 }
@@ -1,14 +1,19 @@
 package com.platform.common.upload.service.impl;
 
-import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.file.FileNameUtil;
 import cn.hutool.core.lang.Dict;
-import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.lang.func.Func0;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.platform.common.upload.enums.UploadTypeEnum;
 import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.utils.FileKeyGenerator;
+import com.platform.common.upload.vo.UploadFileMetaVo;
+import com.platform.common.upload.vo.UploadFileStreamVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
@@ -16,7 +21,19 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 本地上传
@@ -36,6 +53,11 @@ public class UploadLocalServiceImpl extends UploadBaseService implements UploadS
     @Value("${upload.serverUrl}")
     private String serverUrl;
 
+    /**
+     * 已创建的日期目录
+     */
+    private volatile String currentDir;
+
     @Override
     public String getServerUrl() {
         return serverUrl;
@@ -48,9 +70,13 @@ public class UploadLocalServiceImpl extends UploadBaseService implements UploadS
     }
 
     @Override
-    public UploadFileVo uploadFile(MultipartFile file) {
+    protected UploadFileVo uploadFile(MultipartFile file, String fileKey) {
         String fileName = getFileName(file);
-        String fileKey = _getFileKey(rootPath);
+        if (fileKey == null) {
+            fileKey = _getFileKey(rootPath);
+        } else {
+            FileUtil.mkParentDirs(FileUtil.file(rootPath, fileKey));
+        }
         try {
             // 文件拷贝
             file.transferTo(new File(rootPath + FileNameUtil.UNIX_SEPARATOR + fileKey));
@@ -58,39 +84,122 @@ public class UploadLocalServiceImpl extends UploadBaseService implements UploadS
             log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
         }
-        // 组装对象
-        String filePath = serverUrl + DEFAULT_DIR + FileNameUtil.UNIX_SEPARATOR + fileKey;
-        UploadFileVo fileVo = format(fileName, serverUrl, fileKey)
-                .setFilePath(filePath);
-        return fileVo;
+        return toFileVo(fileName, fileKey);
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
+    protected UploadFileVo uploadFile(File file, String fileKey) {
         String fileName = getFileName(file);
-        String fileKey = _getFileKey(rootPath);
+        if (fileKey == null) {
+            fileKey = _getFileKey(rootPath);
+        } else {
+            FileUtil.mkParentDirs(FileUtil.file(rootPath, fileKey));
+        }
         // 文件拷贝
-        FileUtil.copyFile(file, new File(rootPath + FileNameUtil.UNIX_SEPARATOR + fileKey));
+        FileUtil.copyFile(file, new File(rootPath + FileNameUtil.UNIX_SEPARATOR + fileKey), StandardCopyOption.REPLACE_EXISTING);
+        return toFileVo(fileName, fileKey);
+    }
+
+    @Override
+    protected String getContentKey(String hash, String fileName) {
+        return getContentKey(null, hash, fileName);
+    }
+
+    @Override
+    protected boolean exists(String fileKey) {
+        return FileUtil.exist(FileUtil.file(rootPath, fileKey));
+    }
+
+    @Override
+    protected boolean isSameContent(UploadFileMetaVo meta, long size, String md5, String crc64,
+                                    Func0<InputStream> source) {
+        return meta.getSize() != null && meta.getSize() == size
+                && md5.equals(DigestUtil.md5Hex(FileUtil.file(rootPath, meta.getFileKey())));
+    }
+
+    @Override
+    public InputStream getFileInputStream(String fileKey, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(FileUtil.file(rootPath, fileKey).toPath(), StandardOpenOption.READ);
+            channel.position(offset);
+            InputStream inputStream = Channels.newInputStream(channel);
+            return length > 0 ? new BoundedInputStream(inputStream, length) : inputStream;
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败");
+        }
+    }
+
+    @Override
+    public UploadFileMetaVo getFileMeta(String fileKey) {
+        File file = FileUtil.file(rootPath, fileKey);
+        if (!file.isFile()) {
+            log.error("文件不存在：{}", fileKey);
+            throw new RuntimeException("获取文件信息失败");
+        }
+        return new UploadFileMetaVo()
+                .setFileKey(fileKey)
+                .setSize(file.length())
+                // 同 nginx：修改时间-大小
+                .setEtag("\"" + Long.toHexString(file.lastModified() / 1000) + "-" + Long.toHexString(file.length()) + "\"")
+                .setContentType(FileUtil.getMimeType(file.getName()))
+                .setLastModified(new Date(file.lastModified()));
+    }
+
+    /**
+     * 条件读取：元数据在本地获取，直接判断
+     */
+    @Override
+    public UploadFileStreamVo getFileStream(String fileKey, String ifNoneMatch, Date ifModifiedSince) {
+        return getFileStreamByMeta(fileKey, ifNoneMatch, ifModifiedSince);
+    }
+
+    @Override
+    protected UploadFileVo toFileVo(String fileName, String fileKey) {
         // 组装对象
-        UploadFileVo fileVo = format(fileName, serverUrl, fileKey)
+        return format(fileName, serverUrl, fileKey)
                 .setFilePath(serverUrl + DEFAULT_DIR + FileNameUtil.UNIX_SEPARATOR + fileKey);
-        return fileVo;
     }
 
     @Override
-    public boolean delFile(List<String> dataList) {
-        return false;
+    protected Map<String, Boolean> deleteFiles(List<String> dataList) {
+        Path root = Paths.get(rootPath).toAbsolutePath().normalize();
+        return delFilesParallel(dataList, data -> deleteFile(root, data));
+    }
+
+    /**
+     * 删除根目录下的单个文件，空路径、目录或越出根目录的路径不删除
+     */
+    private static boolean deleteFile(Path root, String fileKey) {
+        if (StrUtil.isBlank(fileKey)) {
+            return false;
+        }
+        try {
+            Path path = root.resolve(fileKey).normalize();
+            if (!path.startsWith(root) || path.equals(root) || !Files.isRegularFile(path)) {
+                log.warn("文件删除失败，非法路径：{}", fileKey);
+                return false;
+            }
+            return Files.deleteIfExists(path);
+        } catch (InvalidPathException | IOException e) {
+            log.error("文件删除失败：" + fileKey, e);
+            return false;
+        }
     }
 
     /**
      * 本地存储
      */
-    private static String _getFileKey(String uploadPath) {
-        // 文件路径
-        String filePath = DateUtil.format(DateUtil.date(), "yyyy/MM/dd");
-        // 生成文件夹
-        FileUtil.mkdir(uploadPath + FileNameUtil.UNIX_SEPARATOR + filePath);
-        return filePath + FileNameUtil.UNIX_SEPARATOR + IdUtil.objectId();
+    private String _getFileKey(String uploadPath) {
+        // 文件路径（按天缓存）
+        String filePath = FileKeyGenerator.dayPath();
+        // 生成文件夹，同一天只创建一次；目录被外部删除时重新创建
+        File dir = new File(uploadPath + FileNameUtil.UNIX_SEPARATOR + filePath);
+        if (!filePath.equals(currentDir) || !dir.isDirectory()) {
+            FileUtil.mkdir(dir);
+            currentDir = filePath;
+        }
+        return filePath + FileNameUtil.UNIX_SEPARATOR + FileKeyGenerator.nextId();
     }
 
 }
@@ -1,26 +1,60 @@
 package com.platform.common.upload.service.impl;
 
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.io.file.FileNameUtil;
 import cn.hutool.core.lang.Dict;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.platform.common.upload.enums.UploadTypeEnum;
 import com.platform.common.upload.service.UploadServiceu;
+import com.platform.common.upload.utils.ChecksumInputStream;
+import com.platform.common.upload.utils.S3BatchPresigner;
+import com.platform.common.upload.utils.MinioPartClient;
+import com.platform.common.upload.vo.UploadFileMetaVo;
+import com.platform.common.upload.vo.UploadFileStreamVo;
 import com.platform.common.upload.vo.UploadFileVo;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
-import io.minio.http.Method;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Part;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.InputStream;
 import java.time.ZonedDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+
+import io.minio.http.Method;
 
+import java.util.concurrent.TimeUnit;
 /**
  * MinIO 上传
  */
@@ -36,6 +70,12 @@ public class UploadMinioServiceuImpl extends UploadBaseService implements Upload
     @Value("${uploadu.serverUrl}")
     private String serverUrl;
 
+    /**
+     * 区域
+     */
+    @Value("${uploadu.region:us-east-1}")
+    private String region;
+
     /**
      * accessKey
      */
@@ -60,17 +100,119 @@ public class UploadMinioServiceuImpl extends UploadBaseService implements Upload
     @Value("${uploadu.prefix}")
     private String prefix;
 
+    /**
+     * 连接池最大空闲连接数
+     */
+    @Value("${uploadu.maxIdleConnections:64}")
+    private Integer maxIdleConnections;
+
+    /**
+     * 空闲连接保活时间，毫秒
+     */
+    @Value("${uploadu.keepAliveDuration:300000}")
+    private Long keepAliveDuration;
+
+    /**
+     * 建立连接超时时间，毫秒
+     */
+    @Value("${uploadu.connectionTimeout:10000}")
+    private Long connectionTimeout;
+
+    /**
+     * 读写数据超时时间，毫秒
+     */
+    @Value("${uploadu.socketTimeout:50000}")
+    private Long socketTimeout;
+
+    /**
+     * 分片上传阈值，超过该大小使用分片并发上传，字节
+     */
+    @Value("${uploadu.multipartThreshold:16777216}")
+    private Long multipartThreshold;
+
+    /**
+     * 分片大小，字节（不小于5MB）
+     */
+    @Value("${uploadu.partSize:8388608}")
+    private Integer partSize;
+
+    /**
+     * 单个文件的分片并发数
+     */
+    @Value("${uploadu.partTaskNum:4}")
+    private Integer partTaskNum;
+
+    /**
+     * 分片上传线程数
+     */
+    @Value("${uploadu.partThreads:16}")
+    private Integer partThreads;
+
+    /**
+     * 单个分片失败重试次数
+     */
+    @Value("${uploadu.partRetry:3}")
+    private Integer partRetry;
+
+    /**
+     * 所有上传同时在内存中的分片数上限（限制分片上传总内存：partBufferNum × partSize）
+     */
+    @Value("${uploadu.partBufferNum:16}")
+    private Integer partBufferNum;
+
     // 预签名URL的有效期（例如：30分钟）
     private static final int URL_EXPIRY_MINUTES = 30;
 
+    /**
+     * http客户端（连接池、线程池全局共享）
+     */
+    private OkHttpClient httpClient;
+
+    /**
+     * MinIO 客户端（线程安全，全局共享）
+     */
+    private MinioClient client;
+
+    /**
+     * MinIO 分片客户端
+     */
+    private MinioPartClient partClient;
+
     /**
      * 初始化 MinIO 客户端
      */
-    private MinioClient initMinio() {
-        return MinioClient.builder()
+    @PostConstruct
+    public void initMinio() {
+        httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveDuration, TimeUnit.MILLISECONDS))
+                .connectTimeout(connectionTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(socketTimeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(socketTimeout, TimeUnit.MILLISECONDS)
+                .build();
+        client = MinioClient.builder()
                 .endpoint(serverUrl)
+                .region(region)
                 .credentials(accessKey, secretKey)
+                .httpClient(httpClient)
                 .build();
+        partClient = new MinioPartClient(MinioAsyncClient.builder()
+                .endpoint(serverUrl)
+                .region(region)
+                .credentials(accessKey, secretKey)
+                .httpClient(httpClient)
+                .build());
+        initMultipart(partThreads, partTaskNum, partRetry, partBufferNum);
+    }
+
+    /**
+     * 关闭 MinIO 客户端
+     */
+    @PreDestroy
+    public void destroyMinio() {
+        if (httpClient != null) {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
     }
 
     @Override
@@ -80,15 +222,8 @@ public class UploadMinioServiceuImpl extends UploadBaseService implements Upload
 
     @Override
     public Dict getFileToken(String fileExt) {
-        MinioClient client = initMinio();
         // 1. 生成文件名和存储路径
-        String fileName = getFileName();
-        // 如果fileExt不为空，则添加后缀
-        if (fileExt != null && !fileExt.trim().isEmpty()) {
-            // 处理fileExt可能包含的点号，确保只添加一个点
-            String ext = fileExt.startsWith(".") ? fileExt : "." + fileExt;
-            fileName += ext;
-        }
+        String fileName = getFileName(fileExt);
         String fileKey = getFileKey(prefix, fileName);
         try {
             // 计算URL过期时间
@@ -115,21 +250,37 @@ public class UploadMinioServiceuImpl extends UploadBaseService implements Upload
     }
 
     @Override
-    public UploadFileVo uploadFile(MultipartFile file) {
-        MinioClient client = initMinio();
+    public List<Dict> getFileTokens(List<String> fileExts) {
+        // 同一批次只派生一次签名密钥，逐个文件本地签名
+        S3BatchPresigner batchPresigner = new S3BatchPresigner(accessKey, secretKey, region, URL_EXPIRY_MINUTES * 60);
+        HttpUrl endpoint = HttpUrl.get(serverUrl);
+        String host = endpoint.port() == HttpUrl.defaultPort(endpoint.scheme())
+                ? endpoint.host() : endpoint.host() + ":" + endpoint.port();
+        List<Dict> tokens = new ArrayList<>(fileExts.size());
+        for (String fileExt : fileExts) {
+            String fileKey = getFileKey(prefix, getFileName(fileExt));
+            tokens.add(Dict.create()
+                    .set("uploadType", UploadTypeEnum.MINIO)
+                    .set("serverUrl", batchPresigner.presignPut(endpoint.scheme(), host, "/" + bucket + "/" + fileKey))
+                    .set("fileKey", fileKey)
+                    .set("filePath", serverUrl + "/" + bucket + "/" + fileKey));
+        }
+        return tokens;
+    }
+
+    @Override
+    protected UploadFileVo uploadFile(MultipartFile file, String fileKey) {
         try {
             String fileName = getFileName(file);
-            String fileKey = getFileKey(prefix);
-
-            fileKey=appendFileExtension(fileName,fileKey);
+            if (fileKey == null) {
+                fileKey = appendFileExtension(fileName, getFileKey(prefix));
+            }
 
-            InputStream inputStream = file.getInputStream();
-            client.putObject(PutObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(fileKey)
-                    .stream(inputStream, inputStream.available(), -1)
-                    .build());
-            return format(fileName, serverUrl + FileNameUtil.UNIX_SEPARATOR + bucket, fileKey);
+            // 上传同时计算校验值，SDK 对每个请求附带 Content-MD5 或 SHA256
+            try (ChecksumInputStream inputStream = new ChecksumInputStream(file.getInputStream())) {
+                putObject(fileKey, inputStream, file.getSize());
+                return setChecksum(toFileVo(fileName, fileKey), inputStream, file.getSize());
+            }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
@@ -137,41 +288,193 @@ public class UploadMinioServiceuImpl extends UploadBaseService implements Upload
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
-        MinioClient client = initMinio();
+    protected UploadFileVo uploadFile(File file, String fileKey) {
         try {
             String fileName = getFileName(file);
-            String fileKey = getFileKey(prefix);
+            if (fileKey == null) {
+                fileKey = appendFileExtension(fileName, getFileKey(prefix));
+            }
 
-            fileKey=appendFileExtension(fileName,fileKey);
+            try (ChecksumInputStream inputStream = new ChecksumInputStream(java.nio.file.Files.newInputStream(file.toPath()))) {
+                putObject(fileKey, inputStream, file.length());
+                return setChecksum(toFileVo(fileName, fileKey), inputStream, file.length());
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("文件上传失败");
+        }
+    }
 
-            InputStream inputStream = java.nio.file.Files.newInputStream(file.toPath());
-            client.putObject(PutObjectArgs.builder()
+    @Override
+    protected String getContentKey(String hash, String fileName) {
+        return getContentKey(prefix, hash, fileName);
+    }
+
+    @Override
+    protected boolean exists(String fileKey) throws Exception {
+        try {
+            client.statObject(StatObjectArgs.builder()
                     .bucket(bucket)
                     .object(fileKey)
-                    .stream(inputStream, inputStream.available(), -1)
                     .build());
-            return format(fileName, serverUrl + FileNameUtil.UNIX_SEPARATOR + bucket, fileKey);
+            return true;
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream getFileInputStream(String fileKey, long offset, long length) {
+        try {
+            return client.getObject(GetObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(fileKey)
+                    // 读取整个文件时不指定范围
+                    .offset(offset > 0 || length > 0 ? offset : null)
+                    .length(length > 0 ? length : null)
+                    .build());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
+            throw new RuntimeException("获取文件流失败");
         }
     }
 
     @Override
-    public boolean delFile(List<String> dataList) {
-        MinioClient client = initMinio();
+    public UploadFileMetaVo getFileMeta(String fileKey) {
         try {
-            for (String data : dataList) {
-                client.removeObject(io.minio.RemoveObjectArgs.builder()
-                        .bucket(bucket)
-                        .object(data)
-                        .build());
+            StatObjectResponse response = client.statObject(StatObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(fileKey)
+                    .build());
+            return new UploadFileMetaVo()
+                    .setFileKey(fileKey)
+                    .setSize(response.size())
+                    .setEtag(response.etag())
+                    .setContentType(response.contentType())
+                    .setLastModified(response.lastModified() == null ? null : Date.from(response.lastModified().toInstant()));
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件信息失败");
+        }
+    }
+
+    /**
+     * 条件读取：一次条件 GET，304 时返回未修改（SDK不返回304的响应头，元数据仅有文件名称）
+     */
+    @Override
+    public UploadFileStreamVo getFileStream(String fileKey, String ifNoneMatch, Date ifModifiedSince) {
+        GetObjectArgs.Builder builder = GetObjectArgs.builder()
+                .bucket(bucket)
+                .object(fileKey);
+        // 同 RFC 7232：存在 If-None-Match 时不发送 If-Modified-Since
+        if (StringUtils.hasText(ifNoneMatch)) {
+            builder.notMatchETag(ifNoneMatch);
+        } else if (ifModifiedSince != null) {
+            builder.modifiedSince(ZonedDateTime.ofInstant(ifModifiedSince.toInstant(), ZoneOffset.UTC));
+        }
+        try {
+            GetObjectResponse response = client.getObject(builder.build());
+            Headers headers = response.headers();
+            String length = headers.get("Content-Length");
+            return new UploadFileStreamVo()
+                    .setMeta(new UploadFileMetaVo()
+                            .setFileKey(fileKey)
+                            .setSize(length == null ? null : Long.valueOf(length))
+                            .setEtag(headers.get("ETag"))
+                            .setContentType(headers.get("Content-Type"))
+                            .setLastModified(headers.getDate("Last-Modified")))
+                    .setInputStream(response);
+        } catch (ServerException e) {
+            if (e.statusCode() != 304) {
+                log.error(e.getMessage(), e);
+                throw new RuntimeException("获取文件流失败");
             }
-            return true;
+            return new UploadFileStreamVo()
+                    .setMeta(new UploadFileMetaVo().setFileKey(fileKey))
+                    .setNotModified(true);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件删除失败");
+            throw new RuntimeException("获取文件流失败");
+        }
+    }
+
+    @Override
+    protected UploadFileVo toFileVo(String fileName, String fileKey) {
+        return format(fileName, serverUrl + FileNameUtil.UNIX_SEPARATOR + bucket, fileKey);
+    }
+
+    /**
+     * 上传对象
+     * 长度未知时由 SDK 按分片大小缓冲后分片上传，超过阈值时分片并发上传
+     */
+    private void putObject(String fileKey, InputStream inputStream, long size) throws Exception {
+        if (size < 0) {
+            client.putObject(PutObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(fileKey)
+                    .stream(inputStream, -1, partSize)
+                    .build());
+        } else if (size > multipartThreshold) {
+            uploadMultipart(fileKey, inputStream, size);
+        } else {
+            client.putObject(PutObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(fileKey)
+                    .stream(inputStream, size, -1)
+                    .build());
+        }
+    }
+
+    /**
+     * 分片上传，分片并发、重试和失败取消由 uploadMultipart 处理
+     */
+    private void uploadMultipart(String fileKey, InputStream inputStream, long size) throws Exception {
+        String uploadId = partClient.initUpload(bucket, fileKey);
+        uploadMultipart(fileKey, inputStream, size, partSize, new MultipartCallback<Part>() {
+            @Override
+            public Part uploadPart(int partNumber, byte[] bytes) throws Exception {
+                return new Part(partNumber, partClient.putPart(bucket, fileKey, uploadId, partNumber, bytes));
+            }
+
+            @Override
+            public void complete(List<Part> parts) throws Exception {
+                partClient.completeUpload(bucket, fileKey, uploadId, parts.toArray(new Part[0]));
+            }
+
+            @Override
+            public void abort() throws Exception {
+                partClient.abortUpload(bucket, fileKey, uploadId);
+            }
+        });
+    }
+
+    @Override
+    protected Map<String, Boolean> deleteFiles(List<String> dataList) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        // 单次最多删除1000个
+        for (List<String> keys : ListUtil.partition(dataList, 1000)) {
+            try {
+                List<DeleteObject> objects = keys.stream()
+                        .map(DeleteObject::new)
+                        .collect(Collectors.toList());
+                keys.forEach(key -> result.put(key, true));
+                // 只返回删除失败的文件，需遍历结果才会发起请求
+                for (Result<DeleteError> deleteResult : client.removeObjects(RemoveObjectsArgs.builder()
+                        .bucket(bucket)
+                        .objects(objects)
+                        .build())) {
+                    DeleteError error = deleteResult.get();
+                    log.warn("文件删除失败：{}，{}", error.objectName(), error.message());
+                    result.put(error.objectName(), false);
+                }
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                keys.forEach(key -> result.put(key, false));
+            }
         }
+        return result;
     }
 }
\ No newline at end of file
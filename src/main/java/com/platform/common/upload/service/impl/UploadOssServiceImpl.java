@@ -1,27 +1,53 @@
 package com.platform.common.upload.service.impl;
 
 import cn.hutool.core.codec.Base64;
-import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.file.FileNameUtil;
 import cn.hutool.core.lang.Dict;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONUtil;
+import com.aliyun.oss.ClientBuilderConfiguration;
 import com.aliyun.oss.OSS;
 import com.aliyun.oss.OSSClientBuilder;
-import com.aliyun.oss.model.PolicyConditions;
+import com.aliyun.oss.OSSErrorCode;
+import com.aliyun.oss.OSSException;
+import com.aliyun.oss.model.DeleteObjectsRequest;
+import com.aliyun.oss.model.GetObjectRequest;
+import com.aliyun.oss.model.OSSObject;
+import com.aliyun.oss.model.ObjectMetadata;
+import com.aliyun.oss.model.DeleteObjectsResult;
+import com.aliyun.oss.model.UploadFileRequest;
+import com.platform.common.upload.cache.TokenCache;
 import com.platform.common.upload.enums.UploadTypeEnum;
 import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.utils.ChecksumInputStream;
+import com.platform.common.upload.vo.UploadFileMetaVo;
+import com.platform.common.upload.vo.UploadFileStreamVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.InputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 阿里云上传
@@ -62,13 +88,92 @@ public class UploadOssServiceImpl extends UploadBaseService implements UploadSer
      */
     @Value("${upload.prefix}")
     private String prefix;
+    /**
+     * 最大连接数
+     */
+    @Value("${upload.maxConnections:1024}")
+    private Integer maxConnections;
+    /**
+     * 建立连接超时时间，毫秒
+     */
+    @Value("${upload.connectionTimeout:10000}")
+    private Integer connectionTimeout;
+    /**
+     * 读写数据超时时间，毫秒
+     */
+    @Value("${upload.socketTimeout:50000}")
+    private Integer socketTimeout;
+    /**
+     * 空闲连接回收时间，毫秒
+     */
+    @Value("${upload.idleConnectionTime:60000}")
+    private Long idleConnectionTime;
+    /**
+     * 分片上传阈值，超过该大小使用分片断点续传，字节
+     */
+    @Value("${upload.multipartThreshold:16777216}")
+    private Long multipartThreshold;
+    /**
+     * 分片大小，字节
+     */
+    @Value("${upload.partSize:8388608}")
+    private Long partSize;
+    /**
+     * 分片并发数
+     */
+    @Value("${upload.partTaskNum:4}")
+    private Integer partTaskNum;
+    /**
+     * 断点记录目录
+     */
+    @Value("${upload.checkpointDir:${java.io.tmpdir}/oss-checkpoint}")
+    private String checkpointDir;
+
+    /**
+     * 上传凭证有效期，分钟
+     */
+    private static final int TOKEN_EXPIRE_MINUTES = 30;
+
+    /**
+     * 策略过期时间格式
+     */
+    private static final DateTimeFormatter EXPIRATION_FORMATTER = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    /**
+     * 上传策略缓存，过期前5分钟重新生成
+     */
+    private final TokenCache<Dict> tokenCache = new TokenCache<>("oss", TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * oss客户端（线程安全，全局共享）
+     */
+    private OSS client;
 
     /**
      * 初始化oss
      */
-    private OSS initOSS() {
-        return new OSSClientBuilder()
-                .build(region, accessKey, secretKey);
+    @PostConstruct
+    public void initOSS() {
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setMaxConnections(maxConnections);
+        configuration.setConnectionTimeout(connectionTimeout);
+        configuration.setSocketTimeout(socketTimeout);
+        configuration.setIdleConnectionTime(idleConnectionTime);
+        client = new OSSClientBuilder()
+                .build(region, accessKey, secretKey, configuration);
+        FileUtil.mkdir(checkpointDir);
+    }
+
+    /**
+     * 关闭oss
+     */
+    @PreDestroy
+    public void destroyOSS() {
+        if (client != null) {
+            client.shutdown();
+        }
     }
 
     @Override
@@ -78,74 +183,221 @@ public class UploadOssServiceImpl extends UploadBaseService implements UploadSer
 
     @Override
     public Dict getFileToken(String fileExt) {
-        // 1、默认固定值，分钟
-        Integer expire = 30;
-        // 2、过期时间
-        Date expiration = DateUtil.offsetMinute(DateUtil.date(), expire);
-        // 3、构造“策略”（Policy）
-        OSS ossClient = initOSS();
-        PolicyConditions policyConditions = new PolicyConditions();
-        policyConditions.addConditionItem(PolicyConditions.COND_CONTENT_LENGTH_RANGE, 0, 1048576000);
-        String policy = ossClient.generatePostPolicy(expiration, policyConditions);
-        String signature = ossClient.calculatePostSignature(policy);
-        // 4、文件名称
-        String fileName = getFileName();
-        // 如果fileExt不为空，则添加后缀
-        if (fileExt != null && !fileExt.trim().isEmpty()) {
-            // 处理fileExt可能包含的点号，确保只添加一个点
-            String ext = fileExt.startsWith(".") ? fileExt : "." + fileExt;
-            fileName += ext;
-        }
+        // 1、策略按前缀缓存，过期前重新生成
+        Dict policy = tokenCache.get(prefix, TimeUnit.MINUTES.toMillis(TOKEN_EXPIRE_MINUTES), this::createPolicy);
+        // 2、文件名称
+        String fileName = getFileName(fileExt);
         String fileKey = getFileKey(prefix, fileName);
         //log.info("声音文件：{},{}",fileKey,serverUrl + FileNameUtil.UNIX_SEPARATOR + fileKey);
         return Dict.create()
                 .set("uploadType", UploadTypeEnum.OSS)
                 .set("serverUrl", serverUrl)
                 .set("accessKey", accessKey)
-                .set("policy", Base64.encode(policy))
-                .set("signature", signature)
+                .set("policy", policy.getStr("policy"))
+                .set("signature", policy.getStr("signature"))
                 .set("fileKey", fileKey)
                 .set("filePath", serverUrl + FileNameUtil.UNIX_SEPARATOR + fileKey);
     }
 
+    /**
+     * 构造“策略”（Policy）并签名，本地计算，无需创建客户端
+     */
+    private Dict createPolicy(long expireAt) {
+        List<Object> conditions = new ArrayList<>();
+        conditions.add(ListUtil.toList("content-length-range", 0, 1048576000));
+        if (!StringUtils.isEmpty(prefix)) {
+            // 只允许上传到前缀目录下
+            conditions.add(ListUtil.toList("starts-with", "$key", prefix + FileNameUtil.UNIX_SEPARATOR));
+        }
+        String policy = JSONUtil.toJsonStr(Dict.create()
+                .set("expiration", EXPIRATION_FORMATTER.format(Instant.ofEpochMilli(expireAt)))
+                .set("conditions", conditions));
+        String encodePolicy = Base64.encode(policy);
+        String signature = SecureUtil.hmacSha1(secretKey).digestBase64(encodePolicy, false);
+        return Dict.create()
+                .set("policy", encodePolicy)
+                .set("signature", signature);
+    }
+
     @Override
-    public UploadFileVo uploadFile(MultipartFile file) {
-        OSS client = initOSS();
+    protected UploadFileVo uploadFile(MultipartFile file, String fileKey) {
         try {
             String fileName = getFileName(file);
-            String fileKey = getFileKey(prefix);
-            fileKey=appendFileExtension(fileName,fileKey);
-            client.putObject(bucket, fileKey, file.getInputStream());
-            return format(fileName, serverUrl, fileKey);
-        } catch (Exception e) {
+            if (fileKey == null) {
+                fileKey = appendFileExtension(fileName, getFileKey(prefix));
+            }
+            if (file.getSize() > multipartThreshold) {
+                // 大文件落盘后分片并发上传
+                File tempFile = FileUtil.file(checkpointDir, IdUtil.objectId() + ".tmp");
+                try {
+                    file.transferTo(tempFile);
+                    uploadMultipart(fileKey, tempFile, null);
+                } finally {
+                    FileUtil.del(tempFile);
+                }
+            } else {
+                // 上传同时计算校验值，SDK 默认校验 CRC64
+                try (ChecksumInputStream inputStream = new ChecksumInputStream(file.getInputStream())) {
+                    client.putObject(bucket, fileKey, inputStream);
+                    return setChecksum(toFileVo(fileName, fileKey), inputStream, file.getSize());
+                }
+            }
+            return toFileVo(fileName, fileKey);
+        } catch (Throwable e) {
             log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
-        } finally {
-            client.shutdown();
         }
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
-        OSS client = initOSS();
+    protected UploadFileVo uploadFile(File file, String fileKey) {
         try {
             String fileName = getFileName(file);
-            String fileKey = getFileKey(prefix);
-            fileKey=appendFileExtension(fileName,fileKey);
-            InputStream inputStream = FileUtil.getInputStream(file);
-            client.putObject(bucket, fileKey, inputStream);
-            return format(fileName, serverUrl, fileKey);
-        } catch (Exception e) {
+            if (file.length() > multipartThreshold) {
+                return toFileVo(fileName, uploadCheckpoint(file, fileName, fileKey));
+            }
+            if (fileKey == null) {
+                fileKey = appendFileExtension(fileName, getFileKey(prefix));
+            }
+            try (ChecksumInputStream inputStream = new ChecksumInputStream(FileUtil.getInputStream(file))) {
+                client.putObject(bucket, fileKey, inputStream);
+                return setChecksum(toFileVo(fileName, fileKey), inputStream, file.length());
+            }
+        } catch (Throwable e) {
             log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
-        } finally {
-            client.shutdown();
         }
     }
 
     @Override
-    public boolean delFile(List<String> dataList) {
-        return false;
+    protected String getContentKey(String hash, String fileName) {
+        return getContentKey(prefix, hash, fileName);
+    }
+
+    @Override
+    protected boolean exists(String fileKey) {
+        return client.doesObjectExist(bucket, fileKey);
+    }
+
+    @Override
+    public InputStream getFileInputStream(String fileKey, long offset, long length) {
+        try {
+            GetObjectRequest request = new GetObjectRequest(bucket, fileKey);
+            // 读取整个文件时不指定范围；结束位置为-1表示读取到结尾
+            if (offset > 0 || length > 0) {
+                request.setRange(offset, length > 0 ? offset + length - 1 : -1);
+            }
+            return client.getObject(request).getObjectContent();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败");
+        }
+    }
+
+    @Override
+    public UploadFileMetaVo getFileMeta(String fileKey) {
+        try {
+            return toFileMeta(fileKey, client.getObjectMetadata(bucket, fileKey));
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件信息失败");
+        }
+    }
+
+    /**
+     * 条件读取：一次条件 GET，304 时返回未修改（SDK不返回304的响应头，元数据仅有文件名称）
+     */
+    @Override
+    public UploadFileStreamVo getFileStream(String fileKey, String ifNoneMatch, Date ifModifiedSince) {
+        GetObjectRequest request = new GetObjectRequest(bucket, fileKey);
+        // 同 RFC 7232：存在 If-None-Match 时不发送 If-Modified-Since
+        if (StringUtils.hasText(ifNoneMatch)) {
+            request.setNonmatchingETagConstraints(Collections.singletonList(ifNoneMatch));
+        } else if (ifModifiedSince != null) {
+            request.setModifiedSinceConstraint(ifModifiedSince);
+        }
+        try {
+            OSSObject object = client.getObject(request);
+            return new UploadFileStreamVo()
+                    .setMeta(toFileMeta(fileKey, object.getObjectMetadata()))
+                    .setInputStream(object.getObjectContent());
+        } catch (OSSException e) {
+            if (!OSSErrorCode.NOT_MODIFIED.equals(e.getErrorCode())) {
+                log.error(e.getMessage(), e);
+                throw new RuntimeException("获取文件流失败");
+            }
+            return new UploadFileStreamVo()
+                    .setMeta(new UploadFileMetaVo().setFileKey(fileKey))
+                    .setNotModified(true);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败");
+        }
+    }
+
+    private static UploadFileMetaVo toFileMeta(String fileKey, ObjectMetadata metadata) {
+        Long crc64 = metadata.getServerCRC();
+        return new UploadFileMetaVo()
+                .setFileKey(fileKey)
+                .setSize(metadata.getContentLength())
+                .setEtag(metadata.getETag())
+                .setCrc64(crc64 == null ? null : Long.toUnsignedString(crc64))
+                .setContentType(metadata.getContentType())
+                .setLastModified(metadata.getLastModified());
+    }
+
+    /**
+     * 断点续传
+     * 同一文件（路径、大小、修改时间不变）上传失败后再次上传，沿用上次的fileKey和断点记录，从已完成的分片继续
+     */
+    private String uploadCheckpoint(File file, String fileName, String fileKey) throws Throwable {
+        String checkpoint = SecureUtil.md5(file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified());
+        File keyFile = FileUtil.file(checkpointDir, checkpoint + ".key");
+        if (keyFile.exists()) {
+            fileKey = FileUtil.readUtf8String(keyFile);
+        } else {
+            if (fileKey == null) {
+                fileKey = appendFileExtension(fileName, getFileKey(prefix));
+            }
+            FileUtil.writeUtf8String(fileKey, keyFile);
+        }
+        uploadMultipart(fileKey, file, FileUtil.file(checkpointDir, checkpoint + ".ucp").getPath());
+        // 上传成功后SDK会删除断点记录
+        FileUtil.del(keyFile);
+        return fileKey;
+    }
+
+    /**
+     * 分片并发上传
+     */
+    private void uploadMultipart(String fileKey, File file, String checkpointFile) throws Throwable {
+        UploadFileRequest request = new UploadFileRequest(bucket, fileKey);
+        request.setUploadFile(file.getPath());
+        request.setPartSize(partSize);
+        request.setTaskNum(partTaskNum);
+        if (checkpointFile != null) {
+            request.setEnableCheckpoint(true);
+            request.setCheckpointFile(checkpointFile);
+        }
+        client.uploadFile(request);
+    }
+
+    @Override
+    protected Map<String, Boolean> deleteFiles(List<String> dataList) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        // 单次最多删除1000个
+        for (List<String> keys : ListUtil.partition(dataList, DeleteObjectsRequest.DELETE_OBJECTS_ONETIME_LIMIT)) {
+            keys.forEach(key -> result.put(key, false));
+            try {
+                DeleteObjectsResult deleteResult = client.deleteObjects(new DeleteObjectsRequest(bucket)
+                        .withKeys(keys)
+                        .withQuiet(false));
+                deleteResult.getDeletedObjects().forEach(key -> result.put(key, true));
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+        return result;
     }
 
 }
@@ -0,0 +1,160 @@
+package com.platform.common.upload.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+/**
+ * 校验值输入流
+ * 读取的同时计算 MD5、CRC32C、CRC64，无需再次读取文件；支持 mark/reset（SDK 重试时不会重复计算）
+ */
+public class ChecksumInputStream extends FilterInputStream {
+
+    private MessageDigest md5 = DigestUtil.digester("MD5").getDigest();
+
+    private Crc32c crc32c = new Crc32c();
+
+    private Crc64 crc64 = new Crc64();
+
+    private long count;
+
+    private State mark;
+
+    public ChecksumInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            md5.update((byte) b);
+            crc32c.update(b);
+            crc64.update(b);
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            md5.update(b, off, n);
+            crc32c.update(b, off, n);
+            crc64.update(b, off, n);
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // 跳过的数据同样需要计算
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        in.mark(readlimit);
+        try {
+            mark = new State((MessageDigest) md5.clone(), crc32c.copy(), crc64.copy(), count);
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        if (mark == null) {
+            throw new IOException("Resetting to invalid mark");
+        }
+        in.reset();
+        try {
+            md5 = (MessageDigest) mark.md5.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IOException(e);
+        }
+        crc32c = mark.crc32c.copy();
+        crc64 = mark.crc64.copy();
+        count = mark.count;
+    }
+
+    /**
+     * 已读取字节数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * MD5（十六进制）
+     */
+    public String getMd5() {
+        return HexUtil.encodeHexStr(digestMd5());
+    }
+
+    /**
+     * MD5（Base64，Content-MD5）
+     */
+    public String getContentMd5() {
+        return Base64.encode(digestMd5());
+    }
+
+    /**
+     * CRC32C（Base64，与 x-amz-checksum-crc32c 一致）
+     */
+    public String getCrc32c() {
+        long value = crc32c.getValue();
+        return Base64.encode(new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+
+    /**
+     * CRC64（无符号十进制，与 x-oss-hash-crc64ecma 一致）
+     */
+    public String getCrc64() {
+        return crc64.getValueString();
+    }
+
+    private byte[] digestMd5() {
+        try {
+            // 不影响后续读取
+            return ((MessageDigest) md5.clone()).digest();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class State {
+
+        private final MessageDigest md5;
+
+        private final Crc32c crc32c;
+
+        private final Crc64 crc64;
+
+        private final long count;
+
+        private State(MessageDigest md5, Crc32c crc32c, Crc64 crc64, long count) {
+            this.md5 = md5;
+            this.crc32c = crc32c;
+            this.crc64 = crc64;
+            this.count = count;
+        }
+    }
+
+}
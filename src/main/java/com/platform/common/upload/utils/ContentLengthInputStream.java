@@ -0,0 +1,25 @@
+package com.platform.common.upload.utils;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * 带内容长度的输入流（如HTTP响应的Content-Length），用于读取前判断大小
+ */
+public class ContentLengthInputStream extends FilterInputStream {
+
+    private final long contentLength;
+
+    public ContentLengthInputStream(InputStream in, long contentLength) {
+        super(in);
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * 内容长度，字节
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+}
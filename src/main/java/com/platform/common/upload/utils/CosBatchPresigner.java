@@ -0,0 +1,73 @@
+package com.platform.common.upload.utils;
+
+import cn.hutool.core.util.URLUtil;
+import cn.hutool.crypto.SecureUtil;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 腾讯云COS批量预签名
+ * 同一批次共用签名有效期和SignKey，签名在本地完成
+ */
+public class CosBatchPresigner {
+
+    private final String accessKey;
+
+    private final String keyTime;
+
+    private final String signKey;
+
+    public CosBatchPresigner(String accessKey, String secretKey, long expireSeconds) {
+        long now = System.currentTimeMillis() / 1000;
+        this.accessKey = accessKey;
+        this.keyTime = now + ";" + (now + expireSeconds);
+        this.signKey = SecureUtil.hmacSha1(secretKey).digestHex(keyTime);
+    }
+
+    /**
+     * 生成PUT上传地址（签名host）
+     *
+     * @param scheme http/https
+     * @param host   域名
+     * @param path   对象路径，如 /key
+     */
+    public String presignPut(String scheme, String host, String path) {
+        return scheme + "://" + host + URLUtil.encode(path) + "?" + sign("put", path, Collections.singletonMap("host", host));
+    }
+
+    /**
+     * 签名参数（q-sign-algorithm=sha1&...&q-signature=），不签名URL参数
+     *
+     * @param method  小写的请求方法
+     * @param headers 参与签名的请求头，名称为小写
+     */
+    String sign(String method, String path, Map<String, String> headers) {
+        StringBuilder headerString = new StringBuilder();
+        StringBuilder headerList = new StringBuilder();
+        // 按编码后的名称排序
+        Map<String, String> sorted = new TreeMap<>();
+        headers.forEach((name, value) -> sorted.put(URLUtil.encodeAll(name), URLUtil.encodeAll(value)));
+        sorted.forEach((name, value) -> {
+            if (headerList.length() > 0) {
+                headerString.append('&');
+                headerList.append(';');
+            }
+            headerString.append(name).append('=').append(value);
+            headerList.append(name);
+        });
+        String httpString = method + "\n" + path + "\n\n" + headerString + "\n";
+        String stringToSign = "sha1\n" + keyTime + "\n" + SecureUtil.sha1(httpString) + "\n";
+        String signature = SecureUtil.hmacSha1(signKey).digestHex(stringToSign);
+        String encodeKeyTime = URLUtil.encodeAll(keyTime);
+        return "q-sign-algorithm=sha1"
+                + "&q-ak=" + URLUtil.encodeAll(accessKey)
+                + "&q-sign-time=" + encodeKeyTime
+                + "&q-key-time=" + encodeKeyTime
+                + "&q-header-list=" + headerList
+                + "&q-url-param-list="
+                + "&q-signature=" + signature;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.platform.common.upload.utils;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C（Castagnoli），与S3 x-amz-checksum-crc32c一致
+ */
+public class Crc32c implements Checksum {
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xff];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int value = crc;
+        for (int i = off, end = off + len; i < end; i++) {
+            value = (value >>> 8) ^ TABLE[(value ^ b[i]) & 0xff];
+        }
+        crc = value;
+    }
+
+    @Override
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+
+    /**
+     * 复制当前状态
+     */
+    public Crc32c copy() {
+        Crc32c copy = new Crc32c();
+        copy.crc = crc;
+        return copy;
+    }
+
+}
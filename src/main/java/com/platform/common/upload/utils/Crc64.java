@@ -0,0 +1,64 @@
+package com.platform.common.upload.utils;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC64（ECMA-182），与OSS x-oss-hash-crc64ecma、COS x-cos-hash-crc64ecma一致
+ */
+public class Crc64 implements Checksum {
+
+    private static final long[] TABLE = new long[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            long crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xC96C5795D7870F42L : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private long crc = -1L;
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[(int) ((crc ^ b) & 0xff)];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        long value = crc;
+        for (int i = off, end = off + len; i < end; i++) {
+            value = (value >>> 8) ^ TABLE[(int) ((value ^ b[i]) & 0xff)];
+        }
+        crc = value;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc;
+    }
+
+    @Override
+    public void reset() {
+        crc = -1L;
+    }
+
+    /**
+     * 复制当前状态
+     */
+    public Crc64 copy() {
+        Crc64 copy = new Crc64();
+        copy.crc = crc;
+        return copy;
+    }
+
+    /**
+     * 无符号十进制字符串
+     */
+    public String getValueString() {
+        return Long.toUnsignedString(getValue());
+    }
+
+}
@@ -1,8 +1,10 @@
 package com.platform.common.upload.utils;
 
 import com.github.tobato.fastdfs.domain.conn.FdfsWebServer;
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
 import com.github.tobato.fastdfs.domain.fdfs.StorePath;
 import com.github.tobato.fastdfs.domain.fdfs.ThumbImageConfig;
+import com.github.tobato.fastdfs.domain.proto.storage.DownloadByteArray;
 import com.github.tobato.fastdfs.service.FastFileStorageClient;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
@@ -11,11 +13,19 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Set;
 
 @Slf4j
 @Component
 public class FastUtils {
+
+    /**
+     * 下载文件时每次请求的块大小
+     */
+    private static final int DOWNLOAD_CHUNK_SIZE = 1024 * 1024;
+
     private static FastFileStorageClient fastFileStorageClient;
 
     public FastUtils(ThumbImageConfig thumbImageConfig, FastFileStorageClient fastFileStorageClient, FdfsWebServer fdfsWebServer) {
@@ -45,4 +55,99 @@ public class FastUtils {
         return storePath;
     }
 
+    public static void deleteFile(String filePath) {
+        fastFileStorageClient.deleteFile(filePath);
+    }
+
+    /**
+     * 查询文件信息
+     */
+    public static FileInfo getFileInfo(String filePath) {
+        StorePath storePath = StorePath.parseFromUrl(filePath);
+        return fastFileStorageClient.queryFileInfo(storePath.getGroup(), storePath.getPath());
+    }
+
+    /**
+     * 下载文件指定范围，length小于等于0表示读取到结尾
+     * 按 DOWNLOAD_CHUNK_SIZE 分块按需下载，内存中最多一块
+     */
+    public static InputStream downloadFile(String filePath, long offset, long length) {
+        StorePath storePath = StorePath.parseFromUrl(filePath);
+        long end = length > 0 ? offset + length
+                : fastFileStorageClient.queryFileInfo(storePath.getGroup(), storePath.getPath()).getFileSize();
+        return new ChunkedInputStream(storePath, offset, end);
+    }
+
+    /**
+     * 分块下载的文件流
+     */
+    private static class ChunkedInputStream extends InputStream {
+
+        private final StorePath storePath;
+
+        private long position;
+
+        private long end;
+
+        private byte[] chunk = new byte[0];
+
+        private int index;
+
+        private ChunkedInputStream(StorePath storePath, long position, long end) {
+            this.storePath = storePath;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk[index++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - index);
+            System.arraycopy(chunk, index, b, off, n);
+            index += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - index;
+        }
+
+        /**
+         * 当前块读完时下载下一块，没有更多数据返回false
+         */
+        private boolean fill() throws IOException {
+            if (index < chunk.length) {
+                return true;
+            }
+            if (position >= end) {
+                return false;
+            }
+            long size = Math.min(DOWNLOAD_CHUNK_SIZE, end - position);
+            try {
+                chunk = fastFileStorageClient.downloadFile(storePath.getGroup(), storePath.getPath(),
+                        position, size, new DownloadByteArray());
+            } catch (Exception e) {
+                throw new IOException("文件下载失败：" + storePath.getFullPath() + "，offset=" + position, e);
+            }
+            index = 0;
+            position += chunk.length;
+            if (chunk.length < size) {
+                // 已到文件结尾
+                end = position;
+            }
+            return chunk.length > 0;
+        }
+    }
+
 }
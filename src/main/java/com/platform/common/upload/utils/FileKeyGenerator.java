@@ -0,0 +1,179 @@
+package com.platform.common.upload.utils;
+
+import com.platform.common.upload.enums.KeyLayoutEnum;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文件名/存储路径生成
+ * 日期目录按小时（天）缓存，文件名为24位十六进制ID（秒级时间戳 + 进程随机数 + 自增序号），无锁生成
+ * 可选在日期目录前后插入哈希分片目录，分散同一时段的写入
+ */
+public class FileKeyGenerator {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final char SEPARATOR = '/';
+
+    /**
+     * 存储路径时区（东8区）
+     */
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    private static final DateCache HOUR_PATH = new DateCache(
+            DateTimeFormatter.ofPattern("yyyyMM/dd/HH/"), ZONE, ChronoUnit.HOURS);
+
+    private static final DateCache DAY_PATH = new DateCache(
+            DateTimeFormatter.ofPattern("yyyy/MM/dd"), ZoneId.systemDefault(), ChronoUnit.DAYS);
+
+    /**
+     * 进程标识（5字节随机数）
+     */
+    private static final byte[] PROCESS_ID = new byte[5];
+
+    private static final AtomicInteger COUNTER;
+
+    static {
+        SecureRandom random = new SecureRandom();
+        random.nextBytes(PROCESS_ID);
+        COUNTER = new AtomicInteger(random.nextInt());
+    }
+
+    private FileKeyGenerator() {
+    }
+
+    /**
+     * 生成24位十六进制ID
+     */
+    public static String nextId() {
+        int time = (int) (System.currentTimeMillis() / 1000);
+        int count = COUNTER.getAndIncrement();
+        char[] chars = new char[24];
+        putHex(chars, 0, time >>> 24);
+        putHex(chars, 2, time >>> 16);
+        putHex(chars, 4, time >>> 8);
+        putHex(chars, 6, time);
+        for (int i = 0; i < PROCESS_ID.length; i++) {
+            putHex(chars, 8 + i * 2, PROCESS_ID[i]);
+        }
+        putHex(chars, 18, count >>> 16);
+        putHex(chars, 20, count >>> 8);
+        putHex(chars, 22, count);
+        return new String(chars);
+    }
+
+    /**
+     * 生成存储路径：prefix/yyyyMM/dd/HH/fileName
+     */
+    public static String fileKey(String prefix, String fileName) {
+        return fileKey(prefix, fileName, KeyLayoutEnum.DATE, 0);
+    }
+
+    /**
+     * 按布局生成存储路径，分片目录由文件名哈希得到（十六进制，共 shards 个）
+     */
+    public static String fileKey(String prefix, String fileName, KeyLayoutEnum layout, int shards) {
+        String hourPath = HOUR_PATH.get();
+        String shard = layout == KeyLayoutEnum.DATE || shards <= 1 ? null : shard(fileName, shards);
+        StringBuilder builder = new StringBuilder(64 + fileName.length());
+        if (prefix != null && !prefix.isEmpty()) {
+            builder.append(prefix).append(SEPARATOR);
+        }
+        if (shard != null && layout == KeyLayoutEnum.SHARD_DATE) {
+            builder.append(shard).append(SEPARATOR);
+        }
+        builder.append(hourPath);
+        if (shard != null && layout == KeyLayoutEnum.DATE_SHARD) {
+            builder.append(shard).append(SEPARATOR);
+        }
+        return builder.append(fileName).toString();
+    }
+
+    /**
+     * 分片目录，定长十六进制（如16个分片为0-f，256个为00-ff）
+     */
+    private static String shard(String fileName, int shards) {
+        // 打散哈希，避免ID低位规律导致分布不均
+        int hash = fileName.hashCode() * 0x9E3779B9;
+        int index = Math.floorMod(hash ^ (hash >>> 16), shards);
+        int width = (32 - Integer.numberOfLeadingZeros(shards - 1) + 3) / 4;
+        char[] chars = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            chars[i] = HEX[index & 0xf];
+            index >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 按天的目录：yyyy/MM/dd（系统时区）
+     */
+    public static String dayPath() {
+        return DAY_PATH.get();
+    }
+
+    private static void putHex(char[] chars, int offset, int value) {
+        chars[offset] = HEX[(value >> 4) & 0xf];
+        chars[offset + 1] = HEX[value & 0xf];
+    }
+
+    /**
+     * 日期目录缓存，跨越时间段后重新格式化
+     */
+    static class DateCache {
+
+        private final DateTimeFormatter formatter;
+
+        private final ZoneId zone;
+
+        private final ChronoUnit unit;
+
+        private volatile Bucket bucket = new Bucket(0, 0, null);
+
+        DateCache(DateTimeFormatter formatter, ZoneId zone, ChronoUnit unit) {
+            this.formatter = formatter;
+            this.zone = zone;
+            this.unit = unit;
+        }
+
+        String get() {
+            return get(System.currentTimeMillis());
+        }
+
+        String get(long now) {
+            Bucket current = bucket;
+            if (now >= current.start && now < current.end) {
+                return current.path;
+            }
+            // 并发刷新时结果一致，无需加锁
+            ZonedDateTime start = Instant.ofEpochMilli(now).atZone(zone).truncatedTo(unit);
+            current = new Bucket(start.toInstant().toEpochMilli(),
+                    start.plus(1, unit).toInstant().toEpochMilli(),
+                    formatter.format(start));
+            bucket = current;
+            return current.path;
+        }
+    }
+
+    private static class Bucket {
+
+        private final long start;
+
+        private final long end;
+
+        private final String path;
+
+        Bucket(long start, long end, String path) {
+            this.start = start;
+            this.end = end;
+            this.path = path;
+        }
+    }
+
+}
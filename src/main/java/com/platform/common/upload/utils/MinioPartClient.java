@@ -0,0 +1,64 @@
+package com.platform.common.upload.utils;
+
+import io.minio.MinioAsyncClient;
+import io.minio.messages.Part;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * MinIO 分片客户端
+ * 开放 SDK 中受保护的分片接口，用于分片并发上传
+ */
+public class MinioPartClient extends MinioAsyncClient {
+
+    public MinioPartClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    /**
+     * 初始化分片上传
+     */
+    public String initUpload(String bucket, String object) throws Exception {
+        return join(createMultipartUploadAsync(bucket, null, object, null, null))
+                .result()
+                .uploadId();
+    }
+
+    /**
+     * 上传分片
+     */
+    public String putPart(String bucket, String object, String uploadId, int partNumber, byte[] data) throws Exception {
+        return join(uploadPartAsync(bucket, null, object, data, data.length, uploadId, partNumber, null, null))
+                .etag();
+    }
+
+    /**
+     * 合并分片
+     */
+    public void completeUpload(String bucket, String object, String uploadId, Part[] parts) throws Exception {
+        join(completeMultipartUploadAsync(bucket, null, object, uploadId, parts, null, null));
+    }
+
+    /**
+     * 取消分片上传
+     */
+    public void abortUpload(String bucket, String object, String uploadId) throws Exception {
+        join(abortMultipartUploadAsync(bucket, null, object, uploadId, null, null));
+    }
+
+    /**
+     * 等待请求完成，抛出原始异常
+     */
+    private static <T> T join(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+}
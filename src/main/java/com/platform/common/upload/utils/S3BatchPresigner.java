@@ -0,0 +1,91 @@
+package com.platform.common.upload.utils;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * S3 批量预签名（AWS Signature V4，适用于 AWS、MinIO）
+ * 同一批次共用签名日期和签名密钥，签名在本地完成
+ */
+public class S3BatchPresigner {
+
+    private static final DateTimeFormatter AMZ_DATE_FORMATTER = DateTimeFormatter
+            .ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final String accessKey;
+
+    private final long expireSeconds;
+
+    private final String amzDate;
+
+    private final String scope;
+
+    private final byte[] signingKey;
+
+    public S3BatchPresigner(String accessKey, String secretKey, String region, long expireSeconds) {
+        this(accessKey, secretKey, region, expireSeconds, Instant.now());
+    }
+
+    S3BatchPresigner(String accessKey, String secretKey, String region, long expireSeconds, Instant signingTime) {
+        this.accessKey = accessKey;
+        this.expireSeconds = expireSeconds;
+        this.amzDate = AMZ_DATE_FORMATTER.format(signingTime);
+        String dateStamp = amzDate.substring(0, 8);
+        this.scope = dateStamp + "/" + region + "/s3/aws4_request";
+        byte[] key = SecureUtil.hmacSha256(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8)).digest(dateStamp);
+        key = SecureUtil.hmacSha256(key).digest(region);
+        key = SecureUtil.hmacSha256(key).digest("s3");
+        this.signingKey = SecureUtil.hmacSha256(key).digest("aws4_request");
+    }
+
+    /**
+     * 生成PUT上传地址
+     *
+     * @param scheme http/https
+     * @param host   域名（非默认端口需带端口）
+     * @param path   对象路径，如 /bucket/key
+     */
+    public String presignPut(String scheme, String host, String path) {
+        String canonicalUri = encode(path, false);
+        // 参数需按名称排序
+        String query = "X-Amz-Algorithm=AWS4-HMAC-SHA256"
+                + "&X-Amz-Credential=" + encode(accessKey + "/" + scope, true)
+                + "&X-Amz-Date=" + amzDate
+                + "&X-Amz-Expires=" + expireSeconds
+                + "&X-Amz-SignedHeaders=host";
+        String canonicalRequest = "PUT\n" + canonicalUri + "\n" + query + "\n"
+                + "host:" + host + "\n\n"
+                + "host\n"
+                + "UNSIGNED-PAYLOAD";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + DigestUtil.sha256Hex(canonicalRequest);
+        String signature = HexUtil.encodeHexStr(SecureUtil.hmacSha256(signingKey).digest(stringToSign));
+        return scheme + "://" + host + canonicalUri + "?" + query + "&X-Amz-Signature=" + signature;
+    }
+
+    /**
+     * URI编码（RFC 3986）
+     */
+    private static String encode(String value, boolean encodeSlash) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xff;
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                builder.append((char) c);
+            } else {
+                builder.append('%').append(HEX[c >> 4]).append(HEX[c & 0xf]);
+            }
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.platform.common.upload.vo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 文件流缓存统计
+ */
+@Data
+@Accessors(chain = true) // 链式调用
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadCacheStatsVo {
+
+    /**
+     * 缓存对象数量
+     */
+    private Integer count;
+    /**
+     * 缓存总大小，字节
+     */
+    private Long size;
+    /**
+     * 命中次数
+     */
+    private Long hitCount;
+    /**
+     * 未命中次数
+     */
+    private Long missCount;
+    /**
+     * 从缓存读取的字节数
+     */
+    private Long hitBytes;
+    /**
+     * 下载写入缓存的字节数
+     */
+    private Long loadBytes;
+    /**
+     * 淘汰次数
+     */
+    private Long evictionCount;
+    /**
+     * 超过缓存上限、直接读取不缓存的次数
+     */
+    private Long bypassCount;
+    /**
+     * 未被准入次数（内存缓存，访问频率低于淘汰候选）
+     */
+    private Long rejectCount;
+
+}
@@ -0,0 +1,42 @@
+package com.platform.common.upload.vo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.Date;
+
+/**
+ * 文件元数据
+ */
+@Data
+@Accessors(chain = true) // 链式调用
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadFileMetaVo {
+
+    /**
+     * 文件名称
+     */
+    private String fileKey;
+    /**
+     * 文件大小，字节
+     */
+    private Long size;
+    /**
+     * ETag
+     */
+    private String etag;
+    /**
+     * CRC64（无符号十进制，同 x-oss-hash-crc64ecma）
+     */
+    private String crc64;
+    /**
+     * 文件类型
+     */
+    private String contentType;
+    /**
+     * 最后修改时间
+     */
+    private Date lastModified;
+
+}
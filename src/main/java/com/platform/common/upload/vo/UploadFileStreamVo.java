@@ -0,0 +1,41 @@
+package com.platform.common.upload.vo;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 文件流（带元数据的条件读取结果）
+ */
+@Data
+@Accessors(chain = true) // 链式调用
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadFileStreamVo implements Closeable {
+
+    /**
+     * 文件元数据
+     */
+    private UploadFileMetaVo meta;
+    /**
+     * 未修改（满足If-None-Match/If-Modified-Since，对应304，此时没有文件流）
+     */
+    private boolean notModified;
+    /**
+     * 文件流（使用后需关闭）
+     */
+    @JsonIgnore
+    private InputStream inputStream;
+
+    @Override
+    public void close() throws IOException {
+        if (inputStream != null) {
+            inputStream.close();
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.platform.common.upload.vo;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
@@ -22,5 +23,25 @@ public class UploadFileVo {
      * 文件地址
      */
     private String filePath;
+    /**
+     * MD5（十六进制，上传时流式计算）
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String md5;
+    /**
+     * CRC32C（Base64，同 x-amz-checksum-crc32c）
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String crc32c;
+    /**
+     * CRC64（无符号十进制，同 x-oss-hash-crc64ecma）
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String crc64;
+    /**
+     * 失败原因（批量上传失败时返回）
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String errorMsg;
 
 }
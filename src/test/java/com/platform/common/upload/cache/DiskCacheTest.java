@@ -0,0 +1,109 @@
+package com.platform.common.upload.cache;
+
+import cn.hutool.core.io.IoUtil;
+import com.platform.common.upload.utils.ContentLengthInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DiskCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void cacheSmallObject() throws Exception {
+        DiskCache cache = new DiskCache("test", folder.getRoot().toPath(), 1024);
+        byte[] content = bytes(100);
+        assertArrayEquals(content, read(cache.get("a", () -> load(content, false))));
+        assertArrayEquals(content, read(cache.get("a", () -> load(content, false))));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getCount());
+        assertEquals(100, cache.getSize());
+    }
+
+    @Test
+    public void streamOversizeObjectWithContentLength() throws Exception {
+        DiskCache cache = new DiskCache("test", folder.getRoot().toPath(), 1024);
+        byte[] content = bytes(4096);
+        InputStream inputStream = cache.get("a", () -> load(content, true));
+        // 已知超过上限，不写入临时文件，直接返回原始流
+        assertEquals(ContentLengthInputStream.class, inputStream.getClass());
+        assertEquals(0, fileCount());
+        assertArrayEquals(content, read(inputStream));
+        assertEquals(1, cache.getBypassCount());
+        assertEquals(0, cache.getCount());
+        assertEquals(0, cache.getLoadBytes());
+    }
+
+    @Test
+    public void streamOversizeObjectWithoutContentLength() throws Exception {
+        DiskCache cache = new DiskCache("test", folder.getRoot().toPath(), 1024);
+        byte[] content = bytes(4096);
+        assertArrayEquals(content, read(cache.get("a", () -> load(content, false))));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getBypassCount());
+        assertEquals(0, cache.getCount());
+        // 临时文件读取后删除
+        assertEquals(0, fileCount());
+    }
+
+    @Test
+    public void reloadDeletedCacheFile() throws Exception {
+        DiskCache cache = new DiskCache("test", folder.getRoot().toPath(), 1024);
+        byte[] content = bytes(100);
+        assertArrayEquals(content, read(cache.get("a", () -> load(content, false))));
+        try (Stream<Path> stream = Files.walk(folder.getRoot().toPath())) {
+            stream.filter(Files::isRegularFile).forEach(path -> path.toFile().delete());
+        }
+        // 缓存文件被外部删除：视为未命中，重新下载后大小不重复计算
+        assertArrayEquals(content, read(cache.get("a", () -> load(content, false))));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getCount());
+        assertEquals(100, cache.getSize());
+        assertArrayEquals(content, read(cache.get("a", () -> load(content, false))));
+        assertEquals(2, loads.get());
+    }
+
+    private InputStream load(byte[] content, boolean withLength) {
+        loads.incrementAndGet();
+        InputStream inputStream = new ByteArrayInputStream(content);
+        return withLength ? new ContentLengthInputStream(inputStream, content.length) : inputStream;
+    }
+
+    private long fileCount() throws Exception {
+        try (Stream<Path> stream = Files.walk(folder.getRoot().toPath())) {
+            return stream.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static byte[] read(InputStream inputStream) {
+        try (InputStream in = inputStream) {
+            return IoUtil.readBytes(in);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.platform.common.upload.cache;
+
+import cn.hutool.core.io.IoUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class MemoryCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void rejectedCandidateKeepsColdEntries() {
+        // 窗口区200字节，主区900字节
+        MemoryCache cache = new MemoryCache("test", 1100, 200, 60000);
+        for (int i = 0; i <= 10; i++) {
+            read(cache, "k" + i, 100);
+        }
+        // 主区 k0..k8，k0 最久未访问且访问频率最低
+        for (int n = 0; n < 3; n++) {
+            for (int i = 1; i <= 8; i++) {
+                read(cache, "k" + i, 100);
+            }
+        }
+        read(cache, "big", 200);
+        read(cache, "big", 200);
+        long evictions = cache.getEvictionCount();
+        long rejects = cache.getRejectCount();
+        // big 移出窗口区：淘汰 k0 后仍需淘汰访问频率更高的 k1，应被拒绝且不淘汰 k0
+        read(cache, "x", 100);
+        assertEquals(rejects + 1, cache.getRejectCount());
+        assertEquals(evictions, cache.getEvictionCount());
+
+        int before = loads.get();
+        read(cache, "k0", 100);
+        assertEquals(before, loads.get());
+    }
+
+    @Test
+    public void admitEvictsColdEntries() {
+        MemoryCache cache = new MemoryCache("test", 1100, 200, 60000);
+        for (int i = 0; i <= 10; i++) {
+            read(cache, "k" + i, 100);
+        }
+        for (int n = 0; n < 3; n++) {
+            read(cache, "big", 200);
+        }
+        read(cache, "x", 100);
+        // big 访问频率高于 k0、k1，淘汰二者后进入主区
+        assertEquals(2, cache.getEvictionCount());
+        int before = loads.get();
+        read(cache, "big", 200);
+        read(cache, "k2", 100);
+        assertEquals(before, loads.get());
+    }
+
+    private void read(MemoryCache cache, String key, int length) {
+        try (InputStream inputStream = cache.get(key, () -> {
+            loads.incrementAndGet();
+            return new ByteArrayInputStream(new byte[length]);
+        })) {
+            assertEquals(length, IoUtil.readBytes(inputStream).length);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.platform.common.upload.service.impl;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.map.MapUtil;
+import com.platform.common.upload.vo.UploadFileMetaVo;
+import com.platform.common.upload.vo.UploadFileStreamVo;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 条件读取：一次请求返回元数据和文件流，或未修改
+ */
+public class UploadBaseServiceConditionalTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    private static final String ETAG = "\"v1\"";
+
+    private static final Date LAST_MODIFIED = DateUtil.parse("2024-01-01 00:00:00");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+
+    private String url;
+
+    private File root;
+
+    private UploadLocalServiceImpl service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            Headers headers = exchange.getRequestHeaders();
+            String ifNoneMatch = headers.getFirst("If-None-Match");
+            String ifModifiedSince = headers.getFirst("If-Modified-Since");
+            requests.add(exchange.getRequestMethod() + " " + ifNoneMatch + " " + ifModifiedSince);
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.getResponseHeaders().add("Last-Modified", DateUtil.formatHttpDate(LAST_MODIFIED));
+            boolean notModified = ifNoneMatch != null ? ifNoneMatch.contains(ETAG)
+                    : ifModifiedSince != null && !Date.from(ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()).before(LAST_MODIFIED);
+            if (notModified) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(CONTENT);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/data";
+        root = folder.newFolder("root");
+        service = UploadTestSupport.init(new UploadLocalServiceImpl(), MapUtil.<String, Object>builder()
+                .put("rootPath", root.getPath())
+                .put("serverUrl", "http://localhost")
+                .build());
+    }
+
+    @After
+    public void tearDown() {
+        service.destroyBase();
+        server.stop(0);
+    }
+
+    @Test
+    public void modifiedReturnsMetaAndStreamFromOneGet() throws Exception {
+        try (UploadFileStreamVo streamVo = service.getFileStream("data", url, "\"v0\"", null)) {
+            assertFalse(streamVo.isNotModified());
+            UploadFileMetaVo meta = streamVo.getMeta();
+            assertEquals(Long.valueOf(CONTENT.length), meta.getSize());
+            assertEquals(ETAG, meta.getEtag());
+            assertEquals(LAST_MODIFIED, meta.getLastModified());
+            assertArrayEquals(CONTENT, IoUtil.readBytes(streamVo.getInputStream()));
+        }
+        assertEquals(1, requests.size());
+        assertEquals("GET \"v0\" null", requests.get(0));
+    }
+
+    @Test
+    public void ifNoneMatchTakesPrecedence() throws Exception {
+        try (UploadFileStreamVo streamVo = service.getFileStream("data", url, ETAG, new Date(0))) {
+            assertTrue(streamVo.isNotModified());
+            assertNull(streamVo.getInputStream());
+            assertEquals(ETAG, streamVo.getMeta().getEtag());
+            assertEquals(LAST_MODIFIED, streamVo.getMeta().getLastModified());
+        }
+        // 存在 If-None-Match 时不发送 If-Modified-Since
+        assertEquals("GET " + ETAG + " null", requests.get(0));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void ifModifiedSince() throws Exception {
+        try (UploadFileStreamVo streamVo = service.getFileStream("data", url, null, LAST_MODIFIED)) {
+            assertTrue(streamVo.isNotModified());
+        }
+        try (UploadFileStreamVo streamVo = service.getFileStream("data", url, null, DateUtil.offsetSecond(LAST_MODIFIED, -1))) {
+            assertFalse(streamVo.isNotModified());
+            assertArrayEquals(CONTENT, IoUtil.readBytes(streamVo.getInputStream()));
+        }
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void localEvaluatesMetaWithoutRequest() throws Exception {
+        File file = new File(root, "a.txt");
+        Files.write(file.toPath(), CONTENT);
+        String etag = service.getFileMeta("a.txt").getEtag();
+        try (UploadFileStreamVo streamVo = service.getFileStream("a.txt", "W/" + etag, null)) {
+            assertTrue(streamVo.isNotModified());
+        }
+        try (UploadFileStreamVo streamVo = service.getFileStream("a.txt", "\"other\"", null)) {
+            assertFalse(streamVo.isNotModified());
+            assertArrayEquals(CONTENT, IoUtil.readBytes(streamVo.getInputStream()));
+        }
+        assertTrue(requests.isEmpty());
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.platform.common.upload.service.impl;
+
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.map.MapUtil;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * 范围读取、分段下载
+ */
+public class UploadBaseServiceRangeTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, String> ranges = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private File root;
+
+    private UploadLocalServiceImpl service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = path.endsWith("empty") ? new byte[0] : CONTENT;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.put(path, range == null ? "" : range);
+            if (range == null) {
+                exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+            } else {
+                // 简化：只支持 bytes=start-end / bytes=start-，空文件与S3一致返回416
+                String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                int start = Integer.parseInt(bounds[0]);
+                if (start >= body.length) {
+                    exchange.sendResponseHeaders(416, -1);
+                    exchange.close();
+                    return;
+                }
+                int end = bounds[1].isEmpty() ? body.length - 1 : Math.min(Integer.parseInt(bounds[1]), body.length - 1);
+                byte[] part = new byte[end - start + 1];
+                System.arraycopy(body, start, part, 0, part.length);
+                body = part;
+                exchange.sendResponseHeaders(206, body.length);
+            }
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        root = folder.newFolder("root");
+        service = UploadTestSupport.init(new UploadLocalServiceImpl(), MapUtil.<String, Object>builder()
+                .put("rootPath", root.getPath())
+                .put("serverUrl", baseUrl)
+                .build());
+    }
+
+    @After
+    public void tearDown() {
+        service.destroyBase();
+        server.stop(0);
+    }
+
+    @Test
+    public void fullReadOfEmptyObjectSendsNoRange() throws Exception {
+        try (InputStream inputStream = service.getInputStream(baseUrl + "/empty", 0, 0)) {
+            assertEquals(0, IoUtil.readBytes(inputStream).length);
+        }
+        assertEquals("", ranges.get("/empty"));
+    }
+
+    @Test
+    public void rangedReads() throws Exception {
+        try (InputStream inputStream = service.getInputStream(baseUrl + "/data", 2, 3)) {
+            assertArrayEquals("234".getBytes(StandardCharsets.UTF_8), IoUtil.readBytes(inputStream));
+        }
+        assertEquals("bytes=2-4", ranges.get("/data"));
+        try (InputStream inputStream = service.getInputStream(baseUrl + "/data", 7, 0)) {
+            assertArrayEquals("789".getBytes(StandardCharsets.UTF_8), IoUtil.readBytes(inputStream));
+        }
+        assertEquals("bytes=7-", ranges.get("/data"));
+        try (InputStream inputStream = service.getInputStream(baseUrl + "/data", 0, 0)) {
+            assertArrayEquals(CONTENT, IoUtil.readBytes(inputStream));
+        }
+        assertEquals("", ranges.get("/data"));
+    }
+
+    @Test
+    public void getRangeOmitsWholeFile() {
+        assertNull(UploadBaseService.getRange(0, 0));
+        assertNull(UploadBaseService.getRange(0, -1));
+        assertEquals("bytes=0-9", UploadBaseService.getRange(0, 10));
+        assertEquals("bytes=5-", UploadBaseService.getRange(5, 0));
+    }
+
+    @Test
+    public void downloadRetriesEachRangeDownloadPartRetryTimes() throws Exception {
+        Files.write(new File(root, "data.bin").toPath(), CONTENT);
+        AtomicInteger failures = new AtomicInteger(2);
+        AtomicInteger attempts = new AtomicInteger();
+        UploadLocalServiceImpl flaky = UploadTestSupport.init(new UploadLocalServiceImpl() {
+            @Override
+            public InputStream getFileInputStream(String fileKey, long offset, long length) {
+                attempts.incrementAndGet();
+                if (failures.getAndDecrement() > 0) {
+                    throw new RuntimeException("获取文件流失败");
+                }
+                return super.getFileInputStream(fileKey, offset, length);
+            }
+        }, MapUtil.<String, Object>builder()
+                .put("rootPath", root.getPath())
+                .put("serverUrl", baseUrl)
+                .put("downloadPartRetry", 2)
+                .build());
+        try {
+            File target = new File(folder.getRoot(), "out.bin");
+            flaky.downloadToFile("data.bin", target.toPath());
+            assertArrayEquals(CONTENT, Files.readAllBytes(target.toPath()));
+            assertEquals(3, attempts.get());
+
+            failures.set(3);
+            attempts.set(0);
+            try {
+                flaky.downloadToFile("data.bin", target.toPath());
+                fail();
+            } catch (RuntimeException e) {
+                assertEquals(3, attempts.get());
+            }
+        } finally {
+            flaky.destroyBase();
+        }
+    }
+
+    @Test
+    public void downloadEmptyObjectToFile() throws Exception {
+        Files.createFile(new File(root, "empty.bin").toPath());
+        File target = new File(folder.getRoot(), "out.bin");
+        assertEquals(Long.valueOf(0), service.downloadToFile("empty.bin", target.toPath()).getSize());
+        assertEquals(0, target.length());
+    }
+
+}
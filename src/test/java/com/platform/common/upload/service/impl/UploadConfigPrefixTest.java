@@ -0,0 +1,65 @@
+package com.platform.common.upload.service.impl;
+
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.util.ReflectUtil;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 通用配置按实现类的前缀（upload / uploadu）读取
+ */
+public class UploadConfigPrefixTest {
+
+    @Test
+    public void uploaduServiceReadsUploaduPrefix() throws Exception {
+        UploadOssServiceuImpl service = init(new UploadOssServiceuImpl());
+        try {
+            assertEquals("uploadu", service.getConfigPrefix());
+            assertEquals(4, (int) ReflectUtil.getFieldValue(service, "keyShards"));
+            assertEquals(2, (int) ReflectUtil.getFieldValue(service, "deleteThreads"));
+            // 未配置时使用默认值，不读取 upload 下的配置
+            assertEquals(16, (int) ReflectUtil.getFieldValue(service, "asyncThreads"));
+            assertEquals(false, ReflectUtil.getFieldValue(service, "dedupe"));
+        } finally {
+            service.destroyBase();
+        }
+    }
+
+    @Test
+    public void uploadServiceKeepsUploadPrefix() throws Exception {
+        UploadOssServiceImpl service = init(new UploadOssServiceImpl());
+        try {
+            assertEquals("upload", service.getConfigPrefix());
+            assertEquals(64, (int) ReflectUtil.getFieldValue(service, "keyShards"));
+            assertEquals(32, (int) ReflectUtil.getFieldValue(service, "asyncThreads"));
+            assertEquals(true, ReflectUtil.getFieldValue(service, "dedupe"));
+        } finally {
+            service.destroyBase();
+        }
+    }
+
+    private static <T extends UploadBaseService> T init(T service) throws Exception {
+        StandardEnvironment environment = new StandardEnvironment();
+        Map<String, Object> source = MapUtil.<String, Object>builder()
+                .put("upload.keyShards", "64")
+                .put("upload.asyncThreads", "32")
+                .put("upload.dedupe", "true")
+                .put("uploadu.keyShards", "4")
+                .put("uploadu.deleteThreads", "2")
+                .build();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", source));
+        // 模拟容器注入：upload 前缀的 @Value 值
+        return UploadTestSupport.init(service, MapUtil.<String, Object>builder()
+                .put("environment", environment)
+                .put("keyShards", 64)
+                .put("asyncThreads", 32)
+                .put("dedupe", true)
+                .build());
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.platform.common.upload.service.impl;
+
+import cn.hutool.core.lang.Dict;
+import cn.hutool.core.map.MapUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadCosServiceImplTest {
+
+    private static final String URL_PREFIX = "https://examplebucket-1250000000.cos.ap-beijing.myqcloud.com/upload/";
+
+    private UploadCosServiceImpl service;
+
+    @Before
+    public void setUp() throws Exception {
+        service = UploadTestSupport.init(new UploadCosServiceImpl(), MapUtil.<String, Object>builder()
+                .put("serverUrl", "https://cdn.example.com")
+                .put("accessKey", "AKIDQjz3ltompVjBni5LitkWHFlFpwkn9U5q")
+                .put("secretKey", "BQYIM75p8x0iWVFSIgqEKwFprpRSVHlz")
+                .put("bucket", "examplebucket-1250000000")
+                .put("prefix", "upload")
+                .put("region", "ap-beijing")
+                .build());
+        service.initCOS();
+    }
+
+    @After
+    public void tearDown() {
+        service.destroyCOS();
+        service.destroyBase();
+    }
+
+    @Test
+    public void singleAndBatchTokensUseSameUrlForm() {
+        String single = service.getFileToken("txt").getStr("serverUrl");
+        List<Dict> batch = service.getFileTokens(Arrays.asList("txt", "png"));
+        assertEquals(2, batch.size());
+        for (String url : Arrays.asList(single, batch.get(0).getStr("serverUrl"), batch.get(1).getStr("serverUrl"))) {
+            assertTrue(url, url.startsWith(URL_PREFIX));
+            assertTrue(url, url.contains("&q-header-list=host&"));
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.platform.common.upload.service.impl;
+
+import cn.hutool.core.util.ReflectUtil;
+import com.platform.common.upload.service.UploadService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadDelQueueServiceImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private File journal;
+
+    private UploadDelQueueServiceImpl queue;
+
+    @Before
+    public void setUp() throws Exception {
+        journal = new File(folder.getRoot(), "del.journal");
+        queue = new UploadDelQueueServiceImpl();
+        ReflectUtil.setFieldValue(queue, "uploadService", Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{UploadService.class}, (proxy, method, args) -> {
+                    if (!"delFiles".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<String> keys = (List<String>) args[0];
+                    if (keys.contains("slow")) {
+                        started.countDown();
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                    Map<String, Boolean> result = new LinkedHashMap<>();
+                    keys.forEach(key -> result.put(key, true));
+                    return result;
+                }));
+        ReflectUtil.setFieldValue(queue, "batchSize", 1);
+        ReflectUtil.setFieldValue(queue, "interval", 60000L);
+        ReflectUtil.setFieldValue(queue, "retry", 3);
+        ReflectUtil.setFieldValue(queue, "journal", journal.getPath());
+        queue.init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        queue.destroy();
+    }
+
+    @Test
+    public void compactionKeepsOtherFlushInflightKeys() throws Exception {
+        queue.delFile(Collections.singletonList("slow"));
+        // 后台删除 slow 期间，另一个 flush 完成并重写日志
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        queue.delFile(Collections.singletonList("fast"));
+        queue.flush();
+        assertEquals(Collections.singletonList("slow"), readJournal());
+
+        release.countDown();
+        queue.destroy();
+        assertEquals(Collections.emptyList(), readJournal());
+    }
+
+    @Test
+    public void restoresPendingKeysFromJournal() throws Exception {
+        queue.destroy();
+        Files.write(journal.toPath(), Arrays.asList("a", "b"), StandardCharsets.UTF_8);
+        queue.init();
+        assertEquals(2, queue.size());
+        CompletableFuture.runAsync(queue::flush).get(10, TimeUnit.SECONDS);
+        assertEquals(0, queue.size());
+        assertEquals(Collections.emptyList(), readJournal());
+    }
+
+    @Test
+    public void delFileAfterDestroyOnlyAppendsToJournal() throws Exception {
+        queue.destroy();
+        queue.delFile(Collections.singletonList("late"));
+        assertEquals(Collections.singletonList("late"), readJournal());
+    }
+
+    private List<String> readJournal() throws Exception {
+        return Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.platform.common.upload.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.platform.common.upload.vo.UploadFileVo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class UploadLocalServiceImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    private UploadLocalServiceImpl service;
+
+    @Before
+    public void setUp() throws Exception {
+        root = folder.newFolder("root");
+        service = UploadTestSupport.init(new UploadLocalServiceImpl(), MapUtil.<String, Object>builder()
+                .put("rootPath", root.getPath())
+                .put("serverUrl", "http://localhost")
+                .build());
+        write("2024/01/a.txt");
+        write("2024/01/b.txt");
+        folder.newFile("outside.txt");
+    }
+
+    @After
+    public void tearDown() {
+        service.destroyBase();
+    }
+
+    @Test
+    public void delFilesDeletesRegularFile() {
+        Map<String, Boolean> result = service.delFiles(Collections.singletonList("2024/01/a.txt"));
+        assertEquals(Collections.singletonMap("2024/01/a.txt", true), result);
+        assertFalse(new File(root, "2024/01/a.txt").exists());
+        assertTrue(new File(root, "2024/01/b.txt").exists());
+    }
+
+    @Test
+    public void delFilesRejectsRootAndDirectoryKeys() {
+        Map<String, Boolean> result = service.delFiles(Arrays.asList(".", "", " ", "2024/..", "2024", "2024/01/", "2024/01/.."));
+        assertFalse(result.containsValue(true));
+        assertEquals(7, result.size());
+        assertTrue(new File(root, "2024/01/a.txt").exists());
+        assertTrue(new File(root, "2024/01/b.txt").exists());
+    }
+
+    @Test
+    public void delFilesRejectsKeysEscapingRoot() {
+        String absolute = new File(folder.getRoot(), "outside.txt").getAbsolutePath();
+        Map<String, Boolean> result = service.delFiles(Arrays.asList("..", "../outside.txt", "2024/../../outside.txt", absolute));
+        assertFalse(result.containsValue(true));
+        assertTrue(new File(folder.getRoot(), "outside.txt").exists());
+        assertTrue(root.exists());
+    }
+
+    @Test
+    public void delFilesReportsMissingFile() {
+        assertFalse(service.delFiles(Collections.singletonList("2024/01/c.txt")).get("2024/01/c.txt"));
+    }
+
+    @Test
+    public void dedupeSkipsIdenticalContentAndReplacesPlantedContent() throws Exception {
+        UploadLocalServiceImpl dedupe = dedupeService();
+        File source = folder.newFile("a.txt");
+        Files.write(source.toPath(), "hello".getBytes());
+        String fileKey = dedupe.uploadFile(source).getFileKey();
+        assertTrue(fileKey.endsWith(".txt"));
+        File stored = new File(root, fileKey);
+        assertTrue(stored.setLastModified(0));
+
+        // 内容相同：不重新写入，仍返回校验值
+        UploadFileVo existing = dedupe.uploadFile(source);
+        assertEquals(fileKey, existing.getFileKey());
+        assertEquals(DigestUtil.md5Hex("hello"), existing.getMd5());
+        assertNotNull(existing.getCrc32c());
+        assertNotNull(existing.getCrc64());
+        assertEquals(0, stored.lastModified());
+
+        // 路径被预先写入其他内容：重新上传覆盖
+        Files.write(stored.toPath(), "world".getBytes());
+        assertEquals(fileKey, dedupe.uploadFile(source).getFileKey());
+        assertEquals("hello", new String(Files.readAllBytes(stored.toPath())));
+        dedupe.destroyBase();
+    }
+
+    @Test
+    public void dedupeSkipsDeletingContentKeys() throws Exception {
+        UploadLocalServiceImpl dedupe = dedupeService();
+        File source = folder.newFile("a.txt");
+        Files.write(source.toPath(), "hello".getBytes());
+        String fileKey = dedupe.uploadFile(source).getFileKey();
+
+        // 跳过的内容寻址文件视为已处理
+        Map<String, Boolean> result = dedupe.delFiles(Arrays.asList(fileKey, "2024/01/a.txt"));
+        assertTrue(result.get(fileKey));
+        assertTrue(result.get("2024/01/a.txt"));
+        assertTrue(new File(root, fileKey).exists());
+        assertFalse(new File(root, "2024/01/a.txt").exists());
+        dedupe.destroyBase();
+    }
+
+    @Test
+    public void uploadRecreatesRemovedDayDirectory() throws Exception {
+        File source = folder.newFile("a.txt");
+        Files.write(source.toPath(), "hello".getBytes());
+        String fileKey = service.uploadFile(source).getFileKey();
+        File dir = new File(root, fileKey).getParentFile();
+
+        // 日期目录被外部删除后仍可上传
+        FileUtil.del(dir);
+        assertFalse(dir.exists());
+        String next = service.uploadFile(source).getFileKey();
+        assertEquals("hello", new String(Files.readAllBytes(new File(root, next).toPath())));
+    }
+
+    private UploadLocalServiceImpl dedupeService() throws Exception {
+        return UploadTestSupport.init(new UploadLocalServiceImpl(), MapUtil.<String, Object>builder()
+                .put("rootPath", root.getPath())
+                .put("serverUrl", "http://localhost")
+                .put("dedupe", true)
+                .build());
+    }
+
+    private void write(String fileKey) throws Exception {
+        File file = new File(root, fileKey);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), fileKey.getBytes());
+    }
+
+}
@@ -0,0 +1,211 @@
+package com.platform.common.upload.service.impl;
+
+import cn.hutool.core.map.MapUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 分片上传：重试次数、失败取消、内存分片数上限
+ */
+public class UploadMultipartTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private UploadLocalServiceImpl service;
+
+    @Before
+    public void setUp() throws Exception {
+        service = UploadTestSupport.init(new UploadLocalServiceImpl(), MapUtil.<String, Object>builder()
+                .put("rootPath", folder.getRoot().getPath())
+                .put("serverUrl", "http://localhost")
+                .build());
+    }
+
+    @After
+    public void tearDown() {
+        service.destroyBase();
+    }
+
+    @Test
+    public void completesPartsInOrder() throws Exception {
+        service.initMultipart(4, 4, 0, 8);
+        TestCallback callback = new TestCallback();
+        service.uploadMultipart("a", new ByteArrayInputStream(new byte[10]), 10, 3, callback);
+        assertEquals(Arrays.asList(1, 2, 3, 4), callback.completed);
+        assertEquals(Arrays.asList(3, 3, 3, 1), new ArrayList<>(callback.lengths.values()));
+        assertEquals(0, callback.aborted.get());
+    }
+
+    @Test
+    public void retriesFailedPartWithBackoff() throws Exception {
+        service.initMultipart(2, 2, 2, 4);
+        TestCallback callback = new TestCallback();
+        callback.failPart = 2;
+        callback.failTimes = 2;
+        long start = System.nanoTime();
+        service.uploadMultipart("a", new ByteArrayInputStream(new byte[4]), 4, 2, callback);
+        // 重试等待 200ms + 400ms
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 600);
+        assertEquals(3, callback.attempts[2].get());
+        assertEquals(1, callback.attempts[1].get());
+        assertEquals(Arrays.asList(1, 2), callback.completed);
+        assertEquals(0, callback.aborted.get());
+    }
+
+    @Test
+    public void abortsAfterRetriesExhausted() throws Exception {
+        service.initMultipart(2, 2, 1, 4);
+        TestCallback callback = new TestCallback();
+        callback.failPart = 1;
+        callback.failTimes = Integer.MAX_VALUE;
+        try {
+            service.uploadMultipart("a", new ByteArrayInputStream(new byte[4]), 4, 2, callback);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        // 首次 + 重试1次
+        assertEquals(2, callback.attempts[1].get());
+        assertEquals(1, callback.aborted.get());
+        assertEquals(null, callback.completed);
+    }
+
+    @Test
+    public void abortsWhenSourceIsShort() throws Exception {
+        service.initMultipart(2, 2, 0, 4);
+        TestCallback callback = new TestCallback();
+        try {
+            service.uploadMultipart("a", new ByteArrayInputStream(new byte[3]), 4, 2, callback);
+            fail();
+        } catch (IOException e) {
+            assertEquals(1, callback.aborted.get());
+            assertEquals(null, callback.completed);
+        }
+    }
+
+    @Test
+    public void bufferNumBoundsPartsInMemoryAcrossUploads() throws Exception {
+        // 每个文件最多4个分片并发，所有上传共享最多3个分片
+        service.initMultipart(8, 4, 0, 3);
+        TestCallback callback = new TestCallback();
+        callback.sleepMillis = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(() -> {
+                    service.uploadMultipart("a", new ByteArrayInputStream(new byte[16]), 16, 2,
+                            new TestCallback(callback));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(3, callback.maxActive.get());
+    }
+
+    @Test
+    public void taskNumBoundsPartsPerUpload() throws Exception {
+        service.initMultipart(8, 2, 0, 8);
+        TestCallback callback = new TestCallback();
+        callback.sleepMillis = 20;
+        service.uploadMultipart("a", new ByteArrayInputStream(new byte[16]), 16, 2, callback);
+        assertEquals(2, callback.maxActive.get());
+        assertEquals(8, callback.completed.size());
+    }
+
+    private static class TestCallback implements UploadBaseService.MultipartCallback<Integer> {
+
+        private final AtomicInteger[] attempts = new AtomicInteger[32];
+
+        private final AtomicInteger active;
+
+        private final AtomicInteger maxActive;
+
+        private final AtomicInteger aborted = new AtomicInteger();
+
+        private final Map<Integer, Integer> lengths = new ConcurrentSkipListMap<>();
+
+        private volatile List<Integer> completed;
+
+        private int failPart;
+
+        private int failTimes;
+
+        private long sleepMillis;
+
+        TestCallback() {
+            this.active = new AtomicInteger();
+            this.maxActive = new AtomicInteger();
+            for (int i = 0; i < attempts.length; i++) {
+                attempts[i] = new AtomicInteger();
+            }
+        }
+
+        /**
+         * 共享并发计数
+         */
+        TestCallback(TestCallback shared) {
+            this.active = shared.active;
+            this.maxActive = shared.maxActive;
+            this.sleepMillis = shared.sleepMillis;
+            for (int i = 0; i < attempts.length; i++) {
+                attempts[i] = new AtomicInteger();
+            }
+        }
+
+        @Override
+        public Integer uploadPart(int partNumber, byte[] bytes) throws Exception {
+            int attempt = attempts[partNumber].incrementAndGet();
+            int current = active.incrementAndGet();
+            try {
+                maxActive.accumulateAndGet(current, Math::max);
+                Thread.sleep(sleepMillis);
+                if (partNumber == failPart && attempt <= failTimes) {
+                    throw new IOException("part " + partNumber);
+                }
+                lengths.put(partNumber, bytes.length);
+                return partNumber;
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void complete(List<Integer> parts) {
+            completed = parts;
+        }
+
+        @Override
+        public void abort() {
+            aborted.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.platform.common.upload.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+/**
+ * 测试辅助：不启动容器，按 @Value 默认值初始化上传服务
+ */
+final class UploadTestSupport {
+
+    private UploadTestSupport() {
+    }
+
+    /**
+     * 按 @Value 默认值注入字段，properties 中的值优先（key为字段名）
+     */
+    static <T extends UploadBaseService> T init(T service, Map<String, Object> properties) throws Exception {
+        StandardEnvironment environment = new StandardEnvironment();
+        for (Class<?> type = service.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                Value value = field.getAnnotation(Value.class);
+                field.setAccessible(true);
+                if (properties.containsKey(field.getName())) {
+                    field.set(service, properties.get(field.getName()));
+                } else if (value != null && value.value().contains(":")) {
+                    String text = environment.resolvePlaceholders(value.value());
+                    field.set(service, DefaultConversionService.getSharedInstance().convert(text, field.getType()));
+                }
+            }
+        }
+        service.initBase();
+        return service;
+    }
+
+}
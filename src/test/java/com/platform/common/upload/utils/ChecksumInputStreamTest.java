@@ -0,0 +1,102 @@
+package com.platform.common.upload.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 校验值：标准测试向量、分段计算、mark/reset
+ */
+public class ChecksumInputStreamTest {
+
+    private static final byte[] CHECK = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void crc32cCheckValue() {
+        Crc32c crc = new Crc32c();
+        crc.update(CHECK, 0, CHECK.length);
+        assertEquals(0xe3069283L, crc.getValue());
+    }
+
+    @Test
+    public void crc64CheckValue() {
+        Crc64 crc = new Crc64();
+        crc.update(CHECK, 0, CHECK.length);
+        assertEquals("995dc9bbdf1939fa", Long.toHexString(crc.getValue()));
+        assertEquals(Long.toUnsignedString(0x995dc9bbdf1939faL), crc.getValueString());
+    }
+
+    @Test
+    public void splitUpdatesAndCopy() {
+        byte[] data = new byte[10000];
+        new Random(1).nextBytes(data);
+        Crc32c crc32c = new Crc32c();
+        Crc64 crc64 = new Crc64();
+        crc32c.update(data, 0, 4097);
+        crc64.update(data, 0, 4097);
+        Crc32c crc32cCopy = crc32c.copy();
+        Crc64 crc64Copy = crc64.copy();
+        for (int i = 4097; i < data.length; i++) {
+            crc32c.update(data[i]);
+            crc64.update(data[i]);
+        }
+        crc32cCopy.update(data, 4097, data.length - 4097);
+        crc64Copy.update(data, 4097, data.length - 4097);
+        assertEquals(crc32c.getValue(), crc32cCopy.getValue());
+        assertEquals(crc64.getValue(), crc64Copy.getValue());
+
+        Crc32c whole32 = new Crc32c();
+        whole32.update(data, 0, data.length);
+        Crc64 whole64 = new Crc64();
+        whole64.update(data, 0, data.length);
+        assertEquals(whole32.getValue(), crc32c.getValue());
+        assertEquals(whole64.getValue(), crc64.getValue());
+    }
+
+    @Test
+    public void streamValues() throws Exception {
+        try (ChecksumInputStream inputStream = new ChecksumInputStream(new ByteArrayInputStream(CHECK))) {
+            assertArrayEquals(CHECK, IoUtil.readBytes(inputStream, false));
+            assertEquals(CHECK.length, inputStream.getCount());
+            assertEquals(DigestUtil.md5Hex(CHECK), inputStream.getMd5());
+            assertEquals(Base64.encode(DigestUtil.md5(CHECK)), inputStream.getContentMd5());
+            assertEquals(Base64.encode(new byte[]{(byte) 0xe3, 0x06, (byte) 0x92, (byte) 0x83}), inputStream.getCrc32c());
+            assertEquals(Long.toUnsignedString(0x995dc9bbdf1939faL), inputStream.getCrc64());
+        }
+    }
+
+    @Test
+    public void resetDoesNotHashTwice() throws Exception {
+        byte[] data = new byte[5000];
+        new Random(2).nextBytes(data);
+        ChecksumInputStream expected = new ChecksumInputStream(new ByteArrayInputStream(data));
+        IoUtil.readBytes(expected);
+
+        try (ChecksumInputStream inputStream = new ChecksumInputStream(new BufferedInputStream(new ByteArrayInputStream(data)))) {
+            byte[] buffer = new byte[1000];
+            assertEquals(1000, inputStream.read(buffer));
+            // 如SDK重试：标记后读取一部分再回退
+            inputStream.mark(4096);
+            assertEquals(1000, inputStream.read(buffer));
+            inputStream.read();
+            inputStream.skip(500);
+            inputStream.reset();
+            assertEquals(1000, inputStream.getCount());
+            IoUtil.readBytes(inputStream, false);
+            assertEquals(data.length, inputStream.getCount());
+            assertEquals(expected.getMd5(), inputStream.getMd5());
+            assertEquals(expected.getCrc32c(), inputStream.getCrc32c());
+            assertEquals(expected.getCrc64(), inputStream.getCrc64());
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.platform.common.upload.utils;
+
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.net.url.UrlBuilder;
+import cn.hutool.core.net.url.UrlQuery;
+import com.qcloud.cos.auth.BasicCOSCredentials;
+import com.qcloud.cos.auth.COSSigner;
+import com.qcloud.cos.http.HttpMethodName;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 与 SDK 签名器的结果比对（SDK 只签名 content-type、content-md5 和 x- 开头的请求头，不签名 host）
+ */
+public class CosBatchPresignerTest {
+
+    private static final String ACCESS_KEY = "AKIDQjz3ltompVjBni5LitkWHFlFpwkn9U5q";
+
+    private static final String SECRET_KEY = "BQYIM75p8x0iWVFSIgqEKwFprpRSVHlz";
+
+    private static final String HOST = "examplebucket-1250000000.cos.ap-beijing.myqcloud.com";
+
+    private static final String[] PARAMS = {"q-sign-algorithm", "q-ak", "q-sign-time", "q-key-time", "q-header-list", "q-signature"};
+
+    @Test
+    public void sameSignatureAsSdk() {
+        assertSameAsSdk("/exampleobject", Collections.emptyMap());
+        assertSameAsSdk("/2024/01/文件 (1).txt", MapUtil.<String, String>builder()
+                .put("content-type", "text/plain")
+                .put("x-cos-meta-name", "a b/c")
+                .put("content-md5", "mQ/fVh815F3k6TAUm8m0eg==")
+                .build());
+    }
+
+    @Test
+    public void presignPutSignsHost() {
+        CosBatchPresigner presigner = new CosBatchPresigner(ACCESS_KEY, SECRET_KEY, 1800);
+        String url = presigner.presignPut("https", HOST, "/a b.txt");
+        assertEquals("https://" + HOST + "/a%20b.txt", url.substring(0, url.indexOf('?')));
+        UrlQuery query = UrlBuilder.of(url).getQuery();
+        UrlQuery expected = UrlQuery.of(presigner.sign("put", "/a b.txt", Collections.singletonMap("host", HOST)), StandardCharsets.UTF_8);
+        assertEquals("host", String.valueOf(query.get("q-header-list")));
+        for (String name : PARAMS) {
+            assertEquals(name, String.valueOf(expected.get(name)), String.valueOf(query.get(name)));
+        }
+    }
+
+    private static void assertSameAsSdk(String path, Map<String, String> headers) {
+        // SDK 以当前秒作为签名开始时间，跨秒时重试
+        for (int i = 0; ; i++) {
+            long now = System.currentTimeMillis() / 1000;
+            String actual = new CosBatchPresigner(ACCESS_KEY, SECRET_KEY, 1800).sign("put", path, headers);
+            String authorization = new COSSigner().buildAuthorizationStr(HttpMethodName.PUT, path,
+                    headers, Collections.emptyMap(),
+                    new BasicCOSCredentials(ACCESS_KEY, SECRET_KEY), new Date((now + 1800) * 1000));
+            if (System.currentTimeMillis() / 1000 != now && i < 3) {
+                continue;
+            }
+            UrlQuery expectedQuery = UrlQuery.of(authorization, StandardCharsets.UTF_8);
+            UrlQuery actualQuery = UrlQuery.of(actual, StandardCharsets.UTF_8);
+            for (String name : PARAMS) {
+                assertEquals(name, String.valueOf(expectedQuery.get(name)), String.valueOf(actualQuery.get(name)));
+            }
+            return;
+        }
+    }
+
+}
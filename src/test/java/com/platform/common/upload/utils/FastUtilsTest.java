@@ -0,0 +1,78 @@
+package com.platform.common.upload.utils;
+
+import cn.hutool.core.io.IoUtil;
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
+import com.github.tobato.fastdfs.domain.proto.storage.DownloadCallback;
+import com.github.tobato.fastdfs.service.FastFileStorageClient;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FastUtilsTest {
+
+    private static final String FILE_PATH = "group1/M00/00/00/test.bin";
+
+    private final byte[] content = new byte[2 * 1024 * 1024 + 12345];
+
+    private final List<long[]> requests = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        new Random(1).nextBytes(content);
+        FastFileStorageClient client = (FastFileStorageClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{FastFileStorageClient.class}, (proxy, method, args) -> {
+                    if ("queryFileInfo".equals(method.getName())) {
+                        return new FileInfo("127.0.0.1", content.length, 0, 0);
+                    }
+                    if ("downloadFile".equals(method.getName()) && args.length == 5) {
+                        long offset = (Long) args[2];
+                        long size = (Long) args[3];
+                        requests.add(new long[]{offset, size});
+                        int end = (int) Math.min(content.length, offset + size);
+                        DownloadCallback<?> callback = (DownloadCallback<?>) args[4];
+                        return callback.recv(new ByteArrayInputStream(Arrays.copyOfRange(content, (int) offset, end)));
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        new FastUtils(null, client, null);
+    }
+
+    @Test
+    public void downloadWholeFileInChunks() throws Exception {
+        try (InputStream inputStream = FastUtils.downloadFile(FILE_PATH, 0, 0)) {
+            assertArrayEquals(content, IoUtil.readBytes(inputStream));
+        }
+        assertEquals(3, requests.size());
+        for (long[] request : requests) {
+            assertTrue(request[1] > 0 && request[1] <= 1024 * 1024);
+        }
+    }
+
+    @Test
+    public void downloadRange() throws Exception {
+        try (InputStream inputStream = FastUtils.downloadFile(FILE_PATH, 1000, 1024 * 1024 + 1)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 1000, 1000 + 1024 * 1024 + 1), IoUtil.readBytes(inputStream));
+        }
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void rangePastEndStopsAtFileEnd() throws Exception {
+        int offset = content.length - 10;
+        try (InputStream inputStream = FastUtils.downloadFile(FILE_PATH, offset, 100)) {
+            assertArrayEquals(Arrays.copyOfRange(content, offset, content.length), IoUtil.readBytes(inputStream));
+        }
+    }
+
+}
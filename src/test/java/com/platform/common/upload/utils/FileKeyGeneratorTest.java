@@ -0,0 +1,161 @@
+package com.platform.common.upload.utils;
+
+import com.platform.common.upload.enums.KeyLayoutEnum;
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ID唯一性、日期目录切换、存储路径布局
+ */
+public class FileKeyGeneratorTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    @Test
+    public void nextIdUniqueUnderConcurrency() throws Exception {
+        int threads = 8;
+        int perThread = 20000;
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < perThread; j++) {
+                        String id = FileKeyGenerator.nextId();
+                        assertEquals(24, id.length());
+                        ids.add(id);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test
+    public void nextIdStartsWithSeconds() {
+        long before = System.currentTimeMillis() / 1000;
+        long seconds = Long.parseLong(FileKeyGenerator.nextId().substring(0, 8), 16);
+        long after = System.currentTimeMillis() / 1000;
+        assertTrue(seconds >= before && seconds <= after);
+    }
+
+    @Test
+    public void hourPathRollsOverAtBucketBoundary() {
+        FileKeyGenerator.DateCache cache = new FileKeyGenerator.DateCache(
+                DateTimeFormatter.ofPattern("yyyyMM/dd/HH/"), ZONE, ChronoUnit.HOURS);
+        long boundary = ZonedDateTime.of(2024, 12, 31, 23, 0, 0, 0, ZONE).plusHours(1).toInstant().toEpochMilli();
+
+        assertEquals("202412/31/23/", cache.get(boundary - 3600_000));
+        assertEquals("202412/31/23/", cache.get(boundary - 1));
+        assertEquals("202501/01/00/", cache.get(boundary));
+        assertEquals("202501/01/00/", cache.get(boundary + 3599_999));
+        assertEquals("202501/01/01/", cache.get(boundary + 3600_000));
+        // 时间回拨时按实际时间重新计算
+        assertEquals("202412/31/23/", cache.get(boundary - 1));
+    }
+
+    @Test
+    public void dayPathRollsOverAtMidnight() {
+        FileKeyGenerator.DateCache cache = new FileKeyGenerator.DateCache(
+                DateTimeFormatter.ofPattern("yyyy/MM/dd"), ZONE, ChronoUnit.DAYS);
+        long midnight = ZonedDateTime.of(2024, 3, 1, 0, 0, 0, 0, ZONE).toInstant().toEpochMilli();
+
+        assertEquals("2024/02/29", cache.get(midnight - 1));
+        assertEquals("2024/03/01", cache.get(midnight));
+    }
+
+    @Test
+    public void layoutOfFallsBackToDate() {
+        assertEquals(KeyLayoutEnum.SHARD_DATE, KeyLayoutEnum.of("SHARD_DATE"));
+        assertEquals(KeyLayoutEnum.DATE_SHARD, KeyLayoutEnum.of("date_shard"));
+        assertEquals(KeyLayoutEnum.DATE, KeyLayoutEnum.of("unknown"));
+        assertEquals(KeyLayoutEnum.DATE, KeyLayoutEnum.of(null));
+    }
+
+    @Test
+    public void dateLayoutIgnoresShards() {
+        String key = FileKeyGenerator.fileKey("img", "a.png", KeyLayoutEnum.DATE, 256);
+        assertTrue(key, key.matches("img/\\d{6}/\\d{2}/\\d{2}/a\\.png"));
+        assertEquals(key, FileKeyGenerator.fileKey("img", "a.png"));
+        assertTrue(FileKeyGenerator.fileKey(null, "a.png").matches("\\d{6}/\\d{2}/\\d{2}/a\\.png"));
+        assertTrue(FileKeyGenerator.fileKey("", "a.png").matches("\\d{6}/\\d{2}/\\d{2}/a\\.png"));
+    }
+
+    @Test
+    public void shardDateLayoutPutsShardBeforeDate() {
+        String key = FileKeyGenerator.fileKey("img", "a.png", KeyLayoutEnum.SHARD_DATE, 256);
+        assertTrue(key, key.matches("img/[0-9a-f]{2}/\\d{6}/\\d{2}/\\d{2}/a\\.png"));
+    }
+
+    @Test
+    public void dateShardLayoutPutsShardAfterDate() {
+        String key = FileKeyGenerator.fileKey("img", "a.png", KeyLayoutEnum.DATE_SHARD, 16);
+        assertTrue(key, key.matches("img/\\d{6}/\\d{2}/\\d{2}/[0-9a-f]/a\\.png"));
+    }
+
+    @Test
+    public void shardLayoutsUseSameShardForSameName() {
+        String shardDate = FileKeyGenerator.fileKey(null, "a.png", KeyLayoutEnum.SHARD_DATE, 256);
+        String dateShard = FileKeyGenerator.fileKey(null, "a.png", KeyLayoutEnum.DATE_SHARD, 256);
+        assertEquals(shardDate.substring(0, 2), dateShard.substring(dateShard.length() - 8, dateShard.length() - 6));
+    }
+
+    @Test
+    public void shardWidthFollowsShardCount() {
+        // 分片数 <= 1 时不分片
+        assertTrue(FileKeyGenerator.fileKey(null, "a.png", KeyLayoutEnum.SHARD_DATE, 1).matches("\\d{6}/\\d{2}/\\d{2}/a\\.png"));
+        assertTrue(FileKeyGenerator.fileKey(null, "a.png", KeyLayoutEnum.DATE_SHARD, 0).matches("\\d{6}/\\d{2}/\\d{2}/a\\.png"));
+        assertShards(2, 1);
+        assertShards(16, 1);
+        assertShards(17, 2);
+        assertShards(256, 2);
+        assertShards(1000, 3);
+        assertShards(4096, 3);
+        assertShards(65536, 4);
+    }
+
+    private void assertShards(int shards, int width) {
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < 20000; i++) {
+            String key = FileKeyGenerator.fileKey(null, FileKeyGenerator.nextId() + ".png", KeyLayoutEnum.SHARD_DATE, shards);
+            String shard = key.substring(0, key.indexOf('/'));
+            assertEquals(key, width, shard.length());
+            assertTrue(shard, shard.matches("[0-9a-f]+"));
+            int index = Integer.parseInt(shard, 16);
+            assertTrue(key, index < shards);
+            seen.add(index);
+        }
+        // 分片分布覆盖全部（分片数较少时）
+        if (shards <= 256) {
+            assertEquals(shards, seen.size());
+        }
+    }
+
+}